@@ -8,6 +8,8 @@ import com.example.entity.vo.request.TopicCreateVO;
 import com.example.entity.vo.request.TopicUpdateVO;
 import com.example.entity.vo.response.*;
 import com.example.service.AccountService;
+import com.example.service.TopicHotService;
+import com.example.service.TopicReferenceService;
 import com.example.service.TopicService;
 import com.example.service.WeatherService;
 import com.example.utils.Const;
@@ -16,11 +18,14 @@ import jakarta.annotation.Resource;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.Pattern;
+import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
 import java.util.Date;
 import java.util.List;
 
+@Validated
 @RestController
 @RequestMapping("/api/forum")
 public class ForumController {
@@ -37,6 +42,12 @@ public class ForumController {
     @Resource
     AccountService accountService;
 
+    @Resource
+    TopicHotService hotService;
+
+    @Resource
+    TopicReferenceService referenceService;
+
     @GetMapping("/weather")
     public RestBean<WeatherVO> weather(double longitude, double latitude){
         WeatherVO vo = service.fetchWeather(longitude, latitude);
@@ -45,12 +56,9 @@ public class ForumController {
     }
 
     @GetMapping("/types")
-    public RestBean<List<TopicTypeVO>> listTypes(){
-        return RestBean.success(topicService
-                .listTypes()
-                .stream()
-                .map(type -> type.asViewObject(TopicTypeVO.class))
-                .toList());
+    public RestBean<List<TopicTypeVO>> listTypes(ServletWebRequest request){
+        TopicReferenceService.Snapshot snapshot = referenceService.snapshot();
+        return utils.notModifiedHandle(request, snapshot.typesTag(), snapshot.types());
     }
 
     @PostMapping("/create-topic")
@@ -65,13 +73,27 @@ public class ForumController {
 
     @GetMapping("/list-topic")
     public RestBean<List<TopicPreviewVO>> listTopic(@RequestParam @Min(0) int page,
-                                                    @RequestParam @Min(0) int type) {
-        return RestBean.success(topicService.listTopicByPage(page + 1, type));
+                                                    @RequestParam @Min(0) int type,
+                                                    @RequestAttribute(Const.ATTR_USER_ID) int id) {
+        return RestBean.success(topicService.listTopicByPage(page + 1, type, id));
+    }
+
+    @GetMapping(value = "/list-topic", params = "cursor")
+    public RestBean<TopicPageVO> listTopicByCursor(@RequestParam @Pattern(regexp = "(\\d{1,18}-\\d{1,9})?") String cursor,
+                                                   @RequestParam @Min(0) int type,
+                                                   @RequestAttribute(Const.ATTR_USER_ID) int id) {
+        return RestBean.success(topicService.listTopicByCursor(cursor, type, id));
     }
 
     @GetMapping("/top-topic")
-    public RestBean<List<TopicTopVO>> topTopic(){
-        return RestBean.success(topicService.listTopTopics());
+    public RestBean<List<TopicTopVO>> topTopic(ServletWebRequest request){
+        TopicReferenceService.Snapshot snapshot = referenceService.snapshot();
+        return utils.notModifiedHandle(request, snapshot.topsTag(), snapshot.tops());
+    }
+
+    @GetMapping("/hot-topic")
+    public RestBean<List<TopicHotVO>> hotTopic(@RequestParam(defaultValue = "0") @Min(0) int type){
+        return RestBean.success(hotService.listHotTopics(type));
     }
 
     @GetMapping("/topic")
@@ -85,8 +107,8 @@ public class ForumController {
                                    @RequestParam @Pattern(regexp = "(like|collect)") String type,
                                    @RequestParam boolean state,
                                    @RequestAttribute(Const.ATTR_USER_ID) int id) {
-        topicService.interact(new Interact(tid, id, new Date(), type), state);
-        return RestBean.success();
+        return utils.messageHandle(() ->
+                topicService.interact(new Interact(tid, id, new Date(), type), state));
     }
 
     @GetMapping("/collects")
@@ -116,6 +138,12 @@ public class ForumController {
         return RestBean.success(topicService.comments(tid, page + 1));
     }
 
+    @GetMapping(value = "/comments", params = "cursor")
+    public RestBean<CommentPageVO> commentsByCursor(@RequestParam @Min(0) int tid,
+                                                    @RequestParam @Pattern(regexp = "(\\d{1,18}-\\d{1,9})?") String cursor){
+        return RestBean.success(topicService.comments(tid, cursor));
+    }
+
     @GetMapping("/delete-comment")
     public RestBean<Void> deleteComment(@RequestParam @Min(0) int id,
                                         @RequestAttribute(Const.ATTR_USER_ID) int uid){
@@ -10,6 +10,7 @@ import com.example.entity.vo.response.AccountVO;
 import com.example.service.AccountDetailsService;
 import com.example.service.AccountPrivacyService;
 import com.example.service.AccountService;
+import com.example.service.UserCardService;
 import com.example.utils.Const;
 import jakarta.annotation.Resource;
 import org.springframework.beans.BeanUtils;
@@ -36,6 +37,9 @@ public class AccountAdminController {
     @Resource
     StringRedisTemplate template;
 
+    @Resource
+    UserCardService userCardService;
+
     @Value("${spring.security.jwt.expire}")
     private int expire;
 
@@ -76,6 +80,7 @@ public class AccountAdminController {
         AccountPrivacy savePrivacy = object.getJSONObject("privacy").toJavaObject(AccountPrivacy.class);
         BeanUtils.copyProperties(savePrivacy, privacy);
         privacyService.saveOrUpdate(savePrivacy);
+        userCardService.deleteUserCard(id);
         return RestBean.success();
     }
 
@@ -0,0 +1,49 @@
+package com.example.controller.admin;
+
+import com.example.entity.RestBean;
+import com.example.service.TopicReferenceService;
+import com.example.utils.CacheUtils;
+import com.example.utils.Const;
+import jakarta.annotation.Resource;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin/cache")
+public class CacheAdminController {
+
+    @Resource
+    CacheUtils utils;
+
+    @Resource
+    TopicReferenceService referenceService;
+
+    //允许按通配符清理的缓存前缀，令牌黑名单、封禁与限流记录等不属于缓存，不能在这里删除
+    private static final List<String> PURGE_PREFIXES = List.of(
+            Const.USER_CARD_CACHE,
+            Const.FORUM_WEATHER_CACHE,
+            Const.FORUM_TOPIC_PREVIEW_CACHE,
+            Const.FORUM_TOPIC_STATS_CACHE,
+            Const.FORUM_TOPIC_DETAIL_CACHE
+    );
+
+    @GetMapping("/stats")
+    public RestBean<Map<String, Map<String, Long>>> statistics() {
+        return RestBean.success(utils.statistics());
+    }
+
+    @PostMapping("/purge")
+    public RestBean<Long> purge(@RequestParam String pattern) {
+        if(PURGE_PREFIXES.stream().noneMatch(pattern::startsWith))
+            return RestBean.failure(400, "只能清理以下前缀的缓存: " + String.join(", ", PURGE_PREFIXES));
+        return RestBean.success(utils.deleteCachePattern(pattern));
+    }
+
+    @PostMapping("/refresh-reference")
+    public RestBean<Void> refreshReference() {
+        referenceService.publishRefresh();
+        return RestBean.success();
+    }
+}
@@ -6,8 +6,7 @@ import com.baomidou.mybatisplus.annotation.TableName;
 import com.example.entity.BaseData;
 import lombok.Data;
 
-import java.lang.reflect.Field;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 
 @Data
@@ -21,15 +20,43 @@ public class AccountPrivacy implements BaseData {
     boolean qq = true;
     boolean gender = true;
 
-    public String[] hiddenFields(){
-        List<String> strings = new LinkedList<>();
-        Field[] fields = this.getClass().getDeclaredFields();
-        for (Field field : fields) {
-            try {
-                 if(field.getType().equals(boolean.class) && !field.getBoolean(this))
-                     strings.add(field.getName());
-            } catch (Exception ignored) {}
+    //隐私字段名称，下标即为该字段在掩码中的位
+    private static final String[] PRIVACY_FIELDS = {"phone", "email", "wx", "qq", "gender"};
+    //每种隐藏组合对应的忽略字段列表，下标为隐藏字段掩码，列表在所有调用方之间共享，因此都是不可变的
+    private static final List<List<String>> HIDDEN_FIELDS;
+
+    static {
+        List<List<String>> table = new ArrayList<>();
+        for (int mask = 0; mask < 1 << PRIVACY_FIELDS.length; mask++) {
+            List<String> fields = new ArrayList<>();
+            for (int i = 0; i < PRIVACY_FIELDS.length; i++) {
+                if((mask & (1 << i)) != 0)
+                    fields.add(PRIVACY_FIELDS[i]);
+            }
+            table.add(List.copyOf(fields));
         }
-        return strings.toArray(String[]::new);
+        HIDDEN_FIELDS = List.copyOf(table);
+    }
+
+    /**
+     * 计算隐藏字段掩码，每一位对应一个不公开的字段
+     * @return 掩码
+     */
+    public int hiddenMask() {
+        int mask = 0;
+        if(!phone) mask |= 1;
+        if(!email) mask |= 1 << 1;
+        if(!wx) mask |= 1 << 2;
+        if(!qq) mask |= 1 << 3;
+        if(!gender) mask |= 1 << 4;
+        return mask;
+    }
+
+    /**
+     * 获取需要隐藏的字段，可直接作为复制属性时的忽略列表
+     * @return 隐藏字段，不可修改的共享列表
+     */
+    public List<String> hiddenFields(){
+        return HIDDEN_FIELDS.get(this.hiddenMask());
     }
 }
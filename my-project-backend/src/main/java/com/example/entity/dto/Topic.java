@@ -17,4 +17,6 @@ public class Topic {
     Integer type;
     Date time;
     Integer uid;
+    String previewText;
+    String previewImages;
 }
@@ -17,4 +17,5 @@ public class TopicComment {
     String content;
     Date time;
     Integer quote;
+    String quoteText;
 }
@@ -0,0 +1,56 @@
+package com.example.entity.dto;
+
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * 帖子的点赞、收藏与评论计数，写入时增量维护，读取时无需扫描明细表
+ */
+@Data
+@TableName("db_topic_stats")
+@NoArgsConstructor
+@AllArgsConstructor
+public class TopicStats {
+    @TableId
+    Integer tid;
+    int likes;
+    int collects;
+    int comments;
+
+    public TopicStats(int tid) {
+        this.tid = tid;
+    }
+
+    public Map<String, String> toHash() {
+        return Map.of(
+                "like", String.valueOf(likes),
+                "collect", String.valueOf(collects),
+                "comment", String.valueOf(comments)
+        );
+    }
+
+    public static TopicStats parseHash(int tid, Map<?, ?> hash) {
+        return new TopicStats(tid,
+                Integer.parseInt(hash.get("like").toString()),
+                Integer.parseInt(hash.get("collect").toString()),
+                Integer.parseInt(hash.get("comment").toString()));
+    }
+
+    /**
+     * 点赞和收藏对应的数据库计数列名称
+     * @param type 互动类型
+     * @return 列名称
+     */
+    public static String interactColumn(String type) {
+        return switch (type) {
+            case "like" -> "likes";
+            case "collect" -> "collects";
+            default -> throw new IllegalArgumentException("未知的互动类型: " + type);
+        };
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.entity.dto;
+
+import lombok.Data;
+
+/**
+ * 按隐私设置过滤之后的用户公开信息，隐藏的字段为null
+ */
+@Data
+public class UserCard {
+    Integer id;
+    String username;
+    String avatar;
+    String email;
+    Integer gender;
+    String phone;
+    String qq;
+    String wx;
+    String desc;
+}
@@ -0,0 +1,14 @@
+package com.example.entity.vo.response;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 游标分页的评论列表，next为下一页游标，没有更多数据时为null
+ */
+@Data
+public class CommentPageVO {
+    List<CommentVO> list;
+    String next;
+}
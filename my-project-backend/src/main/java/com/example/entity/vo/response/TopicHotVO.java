@@ -0,0 +1,13 @@
+package com.example.entity.vo.response;
+
+import lombok.Data;
+
+import java.util.Date;
+
+@Data
+public class TopicHotVO {
+    int id;
+    String title;
+    int type;
+    Date time;
+}
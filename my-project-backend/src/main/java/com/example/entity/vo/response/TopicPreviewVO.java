@@ -18,4 +18,6 @@ public class TopicPreviewVO {
     String avatar;
     int like;
     int collect;
+    //当前用户是否点赞过，缓存中共享的预览不包含这一项，返回前按用户单独填充
+    boolean liked;
 }
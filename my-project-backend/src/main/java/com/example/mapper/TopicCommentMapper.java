@@ -1,9 +1,23 @@
 package com.example.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.example.entity.dto.InteractCount;
 import com.example.entity.dto.TopicComment;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.List;
 
 @Mapper
 public interface TopicCommentMapper extends BaseMapper<TopicComment> {
+    @Select("""
+            <script>
+                select tid, count(*) as count from db_topic_comment where tid in
+                <foreach collection="tids" item="tid" open="(" separator="," close=")">
+                    #{tid}
+                </foreach>
+                group by tid
+            </script>
+            """)
+    List<InteractCount> commentCountBatch(List<Integer> tids);
 }
@@ -2,6 +2,7 @@ package com.example.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.example.entity.dto.Interact;
+import com.example.entity.dto.InteractCount;
 import com.example.entity.dto.Topic;
 import org.apache.ibatis.annotations.Delete;
 import org.apache.ibatis.annotations.Insert;
@@ -22,25 +23,41 @@ public interface TopicMapper extends BaseMapper<Topic> {
             """)
     void addInteract(List<Interact> interacts, String type);
 
+    @Select("""
+            <script>
+                select concat(tid, ':', uid) from db_topic_interact_${type} where (tid, uid) in
+                <foreach collection="interacts" item="item" open="(" separator="," close=")">
+                    (#{item.tid}, #{item.uid})
+                </foreach>
+            </script>
+            """)
+    List<String> existingInteracts(List<Interact> interacts, String type);
+
     @Delete("""
             <script>
-                delete from db_topic_interact_${type} where
-                <foreach collection="interacts" item="item" separator=" or ">
-                    (tid = #{item.tid} and uid = #{item.uid})
+                delete from db_topic_interact_${type} where (tid, uid) in
+                <foreach collection="interacts" item="item" open="(" separator="," close=")">
+                    (#{item.tid}, #{item.uid})
                 </foreach>
             </script>
             """)
     int deleteInteract(List<Interact> interacts, String type);
 
     @Select("""
-            select count(*) from db_topic_interact_${type} where tid = #{tid}
+            <script>
+                select tid, count(*) as count from db_topic_interact_${type} where tid in
+                <foreach collection="tids" item="tid" open="(" separator="," close=")">
+                    #{tid}
+                </foreach>
+                group by tid
+            </script>
             """)
-    int interactCount(int tid, String type);
+    List<InteractCount> interactCountBatch(List<Integer> tids, String type);
 
     @Select("""
-            select count(*) from db_topic_interact_${type} where tid = #{tid} and uid = #{uid}
+            select uid from db_topic_interact_${type} where tid = #{tid}
             """)
-    int userInteractCount(int tid, int uid, String type);
+    List<Integer> interactUids(int tid, String type);
 
     @Select("""
             select * from db_topic_interact_collect right join db_topic on tid = db_topic.id
@@ -0,0 +1,35 @@
+package com.example.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.example.entity.dto.TopicStats;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.List;
+
+@Mapper
+public interface TopicStatsMapper extends BaseMapper<TopicStats> {
+    @Insert("""
+            insert into db_topic_stats (tid, ${column}) values (#{tid}, greatest(#{delta}, 0))
+             on duplicate key update ${column} = greatest(${column} + #{delta}, 0)
+            """)
+    void increaseCount(int tid, String column, int delta);
+
+    @Insert("""
+            <script>
+                insert into db_topic_stats (tid, likes, collects, comments) values
+                <foreach collection="stats" item="item" separator=",">
+                    (#{item.tid}, #{item.likes}, #{item.collects}, #{item.comments})
+                </foreach>
+                on duplicate key update likes = values(likes), collects = values(collects), comments = values(comments)
+            </script>
+            """)
+    void saveStats(List<TopicStats> stats);
+
+    @Update("""
+            update db_topic_stats set likes = #{stats.likes}, collects = #{stats.collects}, comments = #{stats.comments}
+             where tid = #{stats.tid} and likes = #{expect.likes} and collects = #{expect.collects} and comments = #{expect.comments}
+            """)
+    int compareAndSaveStats(TopicStats expect, TopicStats stats);
+}
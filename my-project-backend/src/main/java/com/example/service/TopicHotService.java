@@ -0,0 +1,13 @@
+package com.example.service;
+
+import com.example.entity.vo.response.TopicHotVO;
+
+import java.util.List;
+import java.util.Map;
+
+public interface TopicHotService {
+    List<TopicHotVO> listHotTopics(int type);
+    void increaseScore(Map<Integer, Integer> deltas, String event);
+    void onTopicUpdated(int tid, int oldType, int newType, String title);
+    void rescore();
+}
@@ -0,0 +1,15 @@
+package com.example.service;
+
+import com.example.entity.dto.Interact;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+public interface TopicInteractIndexService {
+    boolean contains(String type, int tid, int uid);
+    int cardinality(String type, int tid);
+    Set<Integer> filterInteracted(String type, Collection<Integer> tids, int uid);
+    void applyChanges(String type, List<Interact> added, List<Interact> removed);
+    void invalidate(String type, Collection<Integer> tids);
+}
@@ -0,0 +1,14 @@
+package com.example.service;
+
+import com.example.entity.dto.Interact;
+import com.example.entity.vo.response.TopicDetailVO;
+
+import java.util.Collection;
+import java.util.Set;
+
+public interface TopicInteractService {
+    boolean submit(Interact interact, boolean state);
+    void flush();
+    TopicDetailVO.Interact findInteract(int tid, int uid);
+    Set<Integer> filterInteracted(String type, Collection<Integer> tids, int uid);
+}
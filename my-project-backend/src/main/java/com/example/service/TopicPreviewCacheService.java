@@ -0,0 +1,11 @@
+package com.example.service;
+
+import java.util.Collection;
+
+public interface TopicPreviewCacheService {
+    String pageKey(int page, int type);
+    String cursorKey(String cursor, int type);
+    void trackTopics(String key, Collection<Integer> tids);
+    void onTopicCreated(int type);
+    void onTopicUpdated(int tid, int oldType, int newType);
+}
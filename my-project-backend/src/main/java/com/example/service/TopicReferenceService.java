@@ -0,0 +1,25 @@
+package com.example.service;
+
+import com.example.entity.vo.response.TopicTopVO;
+import com.example.entity.vo.response.TopicTypeVO;
+
+import java.util.List;
+import java.util.Set;
+
+public interface TopicReferenceService {
+    Snapshot snapshot();
+    void reload();
+    void publishRefresh();
+
+    /**
+     * 帖子类型与置顶帖子的只读快照，整体替换，不会被修改
+     * @param types 帖子类型列表
+     * @param typesTag 帖子类型列表的ETag
+     * @param tops 置顶帖子列表
+     * @param topsTag 置顶帖子列表的ETag
+     * @param typeIds 合法的帖子类型ID
+     */
+    record Snapshot(List<TopicTypeVO> types, String typesTag,
+                    List<TopicTopVO> tops, String topsTag,
+                    Set<Integer> typeIds) {}
+}
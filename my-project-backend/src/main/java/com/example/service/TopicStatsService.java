@@ -0,0 +1,16 @@
+package com.example.service;
+
+import com.baomidou.mybatisplus.extension.service.IService;
+import com.example.entity.dto.TopicStats;
+
+import java.util.Collection;
+import java.util.Map;
+
+public interface TopicStatsService extends IService<TopicStats> {
+    TopicStats findStats(int tid);
+    Map<Integer, TopicStats> findStats(Collection<Integer> tids);
+    void increaseInteractCount(Map<Integer, Integer> deltas, String type);
+    void increaseCommentCount(int tid, int delta);
+    void recountStats(Collection<Integer> tids);
+    void reconcileStats();
+}
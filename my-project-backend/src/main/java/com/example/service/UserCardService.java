@@ -0,0 +1,12 @@
+package com.example.service;
+
+import com.example.entity.dto.UserCard;
+
+import java.util.Collection;
+import java.util.Map;
+
+public interface UserCardService {
+    UserCard findUserCard(int uid);
+    Map<Integer, UserCard> findUserCards(Collection<Integer> uids);
+    void deleteUserCard(int uid);
+}
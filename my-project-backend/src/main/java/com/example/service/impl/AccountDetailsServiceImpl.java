@@ -7,6 +7,7 @@ import com.example.entity.vo.request.DetailsSaveVO;
 import com.example.mapper.AccountDetailsMapper;
 import com.example.service.AccountDetailsService;
 import com.example.service.AccountService;
+import com.example.service.UserCardService;
 import jakarta.annotation.Resource;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -17,6 +18,9 @@ public class AccountDetailsServiceImpl extends ServiceImpl<AccountDetailsMapper,
     @Resource
     AccountService service;
 
+    @Resource
+    UserCardService userCardService;
+
     @Override
     public AccountDetails findAccountDetailsById(int id) {
         return this.getById(id);
@@ -35,6 +39,7 @@ public class AccountDetailsServiceImpl extends ServiceImpl<AccountDetailsMapper,
                     id, vo.getGender(), vo.getPhone(),
                     vo.getQq(), vo.getWx(), vo.getDesc()
             ));
+            userCardService.deleteUserCard(id);
             return true;
         }
         return false;
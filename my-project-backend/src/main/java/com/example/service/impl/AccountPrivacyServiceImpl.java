@@ -5,6 +5,8 @@ import com.example.entity.dto.AccountPrivacy;
 import com.example.entity.vo.request.PrivacySaveVO;
 import com.example.mapper.AccountPrivacyMapper;
 import com.example.service.AccountPrivacyService;
+import com.example.service.UserCardService;
+import jakarta.annotation.Resource;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -13,6 +15,9 @@ import java.util.Optional;
 @Service
 public class AccountPrivacyServiceImpl extends ServiceImpl<AccountPrivacyMapper, AccountPrivacy> implements AccountPrivacyService {
 
+    @Resource
+    UserCardService userCardService;
+
     @Override
     @Transactional
     public void savePrivacy(int id, PrivacySaveVO vo) {
@@ -26,6 +31,7 @@ public class AccountPrivacyServiceImpl extends ServiceImpl<AccountPrivacyMapper,
             case "qq" -> privacy.setQq(status);
         }
         this.saveOrUpdate(privacy);
+        userCardService.deleteUserCard(id);
     }
 
     public AccountPrivacy accountPrivacy(int id) {
@@ -10,6 +10,7 @@ import com.example.mapper.AccountDetailsMapper;
 import com.example.mapper.AccountMapper;
 import com.example.mapper.AccountPrivacyMapper;
 import com.example.service.AccountService;
+import com.example.service.UserCardService;
 import com.example.utils.Const;
 import com.example.utils.FlowUtils;
 import jakarta.annotation.Resource;
@@ -55,6 +56,9 @@ public class AccountServiceImpl extends ServiceImpl<AccountMapper, Account> impl
     @Resource
     FlowUtils flow;
 
+    @Resource
+    UserCardService userCardService;
+
     /**
      * 从数据库中通过用户名或邮箱查找用户详细信息
      * @param username 用户名
@@ -168,6 +172,7 @@ public class AccountServiceImpl extends ServiceImpl<AccountMapper, Account> impl
                 .set("email", email)
                 .eq("id", id)
                 .update();
+        userCardService.deleteUserCard(id);
         return null;
     }
 
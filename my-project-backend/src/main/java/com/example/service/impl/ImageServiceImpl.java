@@ -7,6 +7,7 @@ import com.example.entity.dto.StoreImage;
 import com.example.mapper.AccountMapper;
 import com.example.mapper.ImageStoreMapper;
 import com.example.service.ImageService;
+import com.example.service.UserCardService;
 import com.example.utils.Const;
 import com.example.utils.FlowUtils;
 import io.minio.*;
@@ -35,6 +36,9 @@ public class ImageServiceImpl extends ServiceImpl<ImageStoreMapper, StoreImage>
     @Resource
     FlowUtils flowUtils;
 
+    @Resource
+    UserCardService userCardService;
+
     private final SimpleDateFormat format = new SimpleDateFormat("yyyyMMdd");
 
     @Override
@@ -88,6 +92,7 @@ public class ImageServiceImpl extends ServiceImpl<ImageStoreMapper, StoreImage>
             this.deleteOldAvatar(avatar);
             if(mapper.update(null, Wrappers.<Account>update()
                     .eq("id", id).set("avatar", imageName)) > 0) {
+                userCardService.deleteUserCard(id);
                 return imageName;
             } else
                 return null;
@@ -0,0 +1,197 @@
+package com.example.service.impl;
+
+import com.alibaba.fastjson2.JSONObject;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.example.entity.dto.Topic;
+import com.example.entity.vo.response.TopicHotVO;
+import com.example.mapper.TopicMapper;
+import com.example.service.TopicHotService;
+import com.example.service.TopicReferenceService;
+import com.example.utils.Const;
+import jakarta.annotation.Resource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 热门帖子排行，每个类型以及全部类型各对应一个Redis有序集合
+ * 互动发生时按时间衰减后的权重累加分数：分数统一换算到某个纪元时刻，越晚发生的互动权重越大，
+ * 这样已有分数无需随时间改写，读取时直接按分数倒序即可
+ * 取消点赞、删除评论等操作不扣减分数：原先的贡献是按当时的权重累加的，按当前权重扣减会扣得过多，
+ * 而旧的贡献本身会随时间衰减，很快就不再影响排行
+ */
+@Service
+public class TopicHotServiceImpl implements TopicHotService {
+
+    @Resource
+    StringRedisTemplate template;
+
+    @Resource
+    TopicMapper topicMapper;
+
+    @Resource
+    TopicReferenceService referenceService;
+
+    //热度半衰期，每经过这么久，之前互动的贡献减半
+    private static final long HALF_LIFE = TimeUnit.HOURS.toMillis(24);
+    //每个排行最多保留的帖子数量
+    private static final int RANK_SIZE = 1000;
+    //热门列表返回的帖子数量
+    private static final int HOT_LIST_SIZE = 10;
+    //纪元距今超过这么多个半衰期时整体换算到新纪元，避免分数过大损失精度
+    private static final int REBASE_HALF_LIVES = 20;
+    //分数低于当前时刻单次点赞权重这个比例的帖子视为已经冷却，直接移出排行
+    private static final double COLD_RATIO = 0.05;
+    //帖子展示信息的保存时间，每次产生热度时续期
+    private static final long INFO_EXPIRE = TimeUnit.DAYS.toSeconds(7);
+    private static final Map<String, Double> WEIGHTS = Map.of(
+            "like", 1.0,
+            "collect", 2.0,
+            "comment", 3.0
+    );
+    //KEYS: 纪元, 帖子信息, 各个排行  ARGV: 当前时间, 权重, 半衰期, 帖子ID, 帖子信息, 信息保存时间
+    private static final RedisScript<Long> INCREASE_SCRIPT = new DefaultRedisScript<>("""
+            local epoch = tonumber(redis.call('get', KEYS[1]))
+            if not epoch then
+                epoch = tonumber(ARGV[1])
+                redis.call('set', KEYS[1], ARGV[1])
+            end
+            local score = tonumber(ARGV[2]) * math.pow(2, (tonumber(ARGV[1]) - epoch) / tonumber(ARGV[3]))
+            for i = 3, #KEYS do
+                redis.call('zincrby', KEYS[i], score, ARGV[4])
+            end
+            redis.call('set', KEYS[2], ARGV[5], 'EX', ARGV[6])
+            return 1
+            """, Long.class);
+    //KEYS: 纪元, 各个排行  ARGV: 当前时间, 半衰期
+    private static final RedisScript<Long> REBASE_SCRIPT = new DefaultRedisScript<>("""
+            local epoch = tonumber(redis.call('get', KEYS[1]))
+            if not epoch then return 0 end
+            local factor = math.pow(2, (epoch - tonumber(ARGV[1])) / tonumber(ARGV[2]))
+            for i = 2, #KEYS do
+                if redis.call('exists', KEYS[i]) == 1 then
+                    redis.call('zunionstore', KEYS[i], 1, KEYS[i], 'WEIGHTS', factor)
+                end
+            end
+            redis.call('set', KEYS[1], ARGV[1])
+            return 1
+            """, Long.class);
+
+    /**
+     * 读取热门帖子，只访问Redis
+     * @param type 帖子类型，0表示全部类型
+     * @return 热门帖子列表
+     */
+    @Override
+    public List<TopicHotVO> listHotTopics(int type) {
+        //多取一些，跳过展示信息已经过期的帖子
+        Set<String> tids = template.opsForZSet().reverseRange(this.rankKey(type), 0, HOT_LIST_SIZE * 2 - 1);
+        if(tids == null || tids.isEmpty()) return List.of();
+        List<String> infos = template.opsForValue().multiGet(tids.stream().map(this::infoKey).toList());
+        if(infos == null) return List.of();
+        return infos.stream()
+                .filter(Objects::nonNull)
+                .map(info -> JSONObject.parseObject(info, TopicHotVO.class))
+                .limit(HOT_LIST_SIZE)
+                .toList();
+    }
+
+    /**
+     * 累加帖子热度，每个帖子同时写入所属类型与全部类型两个排行
+     * @param deltas 帖子ID与互动次数变化的映射，取消点赞等操作为负数，负数的变化会被忽略
+     * @param event 互动类型
+     */
+    @Override
+    public void increaseScore(Map<Integer, Integer> deltas, String event) {
+        Double weight = WEIGHTS.get(event);
+        if(weight == null) return;
+        List<Integer> tids = deltas.entrySet()
+                .stream()
+                .filter(entry -> entry.getValue() > 0)
+                .map(Map.Entry::getKey)
+                .toList();
+        if(tids.isEmpty()) return;
+        String now = String.valueOf(System.currentTimeMillis());
+        topicMapper.selectList(Wrappers.<Topic>query()
+                .select("id", "title", "type", "time")
+                .in("id", tids)
+        ).forEach(topic -> template.execute(INCREASE_SCRIPT,
+                List.of(Const.FORUM_TOPIC_HOT_EPOCH, this.infoKey(topic.getId()),
+                        this.rankKey(topic.getType()), this.rankKey(0)),
+                now,
+                String.valueOf(weight * deltas.get(topic.getId())),
+                String.valueOf(HALF_LIFE),
+                String.valueOf(topic.getId()),
+                JSONObject.toJSONString(this.toHotView(topic)),
+                String.valueOf(INFO_EXPIRE)));
+    }
+
+    /**
+     * 帖子编辑后更新展示信息，类型变化时把分数转移到新类型的排行中
+     */
+    @Override
+    public void onTopicUpdated(int tid, int oldType, int newType, String title) {
+        String info = template.opsForValue().get(this.infoKey(tid));
+        if(info == null) return;
+        TopicHotVO vo = JSONObject.parseObject(info, TopicHotVO.class);
+        vo.setTitle(title);
+        vo.setType(newType);
+        template.opsForValue().setIfPresent(this.infoKey(tid), JSONObject.toJSONString(vo), INFO_EXPIRE, TimeUnit.SECONDS);
+        if(oldType == newType) return;
+        String member = String.valueOf(tid);
+        Double score = template.opsForZSet().score(this.rankKey(oldType), member);
+        if(score == null) return;
+        template.opsForZSet().remove(this.rankKey(oldType), member);
+        template.opsForZSet().incrementScore(this.rankKey(newType), member, score);
+    }
+
+    /**
+     * 定时整理排行，每个排行只保留前若干名并移除已经冷却的帖子，
+     * 因此每轮的工作量只与排行长度上限有关，与帖子总数无关
+     */
+    @Override
+    @Scheduled(initialDelay = 5, fixedDelay = 5, timeUnit = TimeUnit.MINUTES)
+    public void rescore() {
+        String epochValue = template.opsForValue().get(Const.FORUM_TOPIC_HOT_EPOCH);
+        if(epochValue == null) return;
+        long now = System.currentTimeMillis();
+        long epoch = Long.parseLong(epochValue);
+        double cold = WEIGHTS.get("like") * COLD_RATIO * Math.pow(2, (double) (now - epoch) / HALF_LIFE);
+        List<String> keys = Stream.concat(Stream.of(0), referenceService.snapshot().typeIds().stream())
+                .map(this::rankKey)
+                .toList();
+        keys.forEach(key -> {
+            template.opsForZSet().removeRange(key, 0, -RANK_SIZE - 1);
+            template.opsForZSet().removeRangeByScore(key, Double.NEGATIVE_INFINITY, cold);
+        });
+        if(now - epoch > HALF_LIFE * REBASE_HALF_LIVES) {
+            List<String> scriptKeys = new ArrayList<>();
+            scriptKeys.add(Const.FORUM_TOPIC_HOT_EPOCH);
+            scriptKeys.addAll(keys);
+            template.execute(REBASE_SCRIPT, scriptKeys, String.valueOf(now), String.valueOf(HALF_LIFE));
+        }
+    }
+
+    private TopicHotVO toHotView(Topic topic) {
+        TopicHotVO vo = new TopicHotVO();
+        vo.setId(topic.getId());
+        vo.setTitle(topic.getTitle());
+        vo.setType(topic.getType());
+        vo.setTime(topic.getTime());
+        return vo;
+    }
+
+    private String rankKey(int type) {
+        return Const.FORUM_TOPIC_HOT_RANK + type;
+    }
+
+    private String infoKey(int tid) {
+        return Const.FORUM_TOPIC_HOT_INFO + tid;
+    }
+}
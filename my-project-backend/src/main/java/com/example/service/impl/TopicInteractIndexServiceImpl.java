@@ -0,0 +1,335 @@
+package com.example.service.impl;
+
+import com.alibaba.fastjson2.JSONArray;
+import com.example.entity.dto.Interact;
+import com.example.mapper.TopicMapper;
+import com.example.service.TopicInteractIndexService;
+import com.example.utils.Const;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 帖子点赞收藏用户的位图索引，每个帖子的每种互动对应一个Roaring压缩位图，保存所有互动过的用户ID
+ * 位图按需从数据库加载，序列化后保存在Redis中供其他节点直接读取，本地再用Caffeine缓存常用的帖子，
+ * 点赞收藏写入数据库后由写入线程把变化应用到Redis中已有的位图上，再更新本地位图并通过发布订阅通知其他节点同步修改
+ * 本地位图只会整体替换不会原地修改，请求线程读取时无需加锁
+ * 发布订阅的通知可能丢失，因此本地位图从加载起最多保留固定时间，应用修改不会延长保留时间，
+ * Redis中的位图在应用修改时也保持原有的过期时间，错过的修改最迟在过期后重新加载时得到纠正
+ */
+@Slf4j
+@Service
+public class TopicInteractIndexServiceImpl implements TopicInteractIndexService {
+
+    @Resource
+    TopicMapper mapper;
+
+    @Resource
+    RedisTemplate<String, byte[]> byteRedisTemplate;
+
+    @Resource
+    StringRedisTemplate template;
+
+    @Resource
+    RedisMessageListenerContainer container;
+
+    //本地位图占用内存的上限，按位图实际大小计算
+    private static final long LOCAL_MAX_SIZE = 64L * 1024 * 1024;
+    //本地位图从加载起的最长保留时间（分钟），也是错过修改通知时本地结果过时的上限
+    private static final long LOCAL_EXPIRE = 5;
+    //Redis中位图与版本号的保存时间，位图从数据库加载起计算，应用修改时不续期
+    private static final long REDIS_EXPIRE = TimeUnit.DAYS.toSeconds(1);
+    //KEYS: 位图, 版本号  ARGV: 加载前读到的版本号, 位图内容, 保存时间
+    //加载期间有新的写入时版本号会变化，这时不保存可能已经过时的位图
+    private static final RedisScript<Long> SAVE_SCRIPT = new DefaultRedisScript<>("""
+            if (redis.call('get', KEYS[2]) or '') ~= ARGV[1] then return 0 end
+            redis.call('set', KEYS[1], ARGV[2], 'EX', ARGV[3])
+            return 1
+            """, Long.class);
+    //KEYS: 依次为位图与版本号  ARGV: 保存时间, 之后每个位图依次为修改前读到的版本号与修改后的位图内容
+    //版本号总是加一，读取之后版本号没有变化时按剩余的过期时间写回修改后的位图，否则或者修改前没有位图时删除，下次读取时重新加载
+    private static final RedisScript<Long> UPDATE_SCRIPT = new DefaultRedisScript<>("""
+            local n = 2
+            for i = 1, #KEYS, 2 do
+                local current = redis.call('get', KEYS[i + 1]) or ''
+                redis.call('incr', KEYS[i + 1])
+                redis.call('expire', KEYS[i + 1], ARGV[1])
+                local ttl = redis.call('ttl', KEYS[i])
+                if current == ARGV[n] and ARGV[n + 1] ~= '' and ttl > 0 then
+                    redis.call('set', KEYS[i], ARGV[n + 1], 'EX', ttl)
+                else
+                    redis.call('del', KEYS[i])
+                end
+                n = n + 2
+            end
+            return 1
+            """, Long.class);
+    //KEYS: 依次为位图与版本号  ARGV: 版本号保存时间
+    private static final RedisScript<Long> INVALIDATE_SCRIPT = new DefaultRedisScript<>("""
+            for i = 1, #KEYS, 2 do
+                redis.call('incr', KEYS[i + 1])
+                redis.call('expire', KEYS[i + 1], ARGV[1])
+                redis.call('del', KEYS[i])
+            end
+            return 1
+            """, Long.class);
+
+    private final Cache<String, RoaringBitmap> local = Caffeine.newBuilder()
+            .maximumWeight(LOCAL_MAX_SIZE)
+            .weigher((String key, RoaringBitmap bitmap) -> (int) Math.min(Integer.MAX_VALUE, bitmap.getLongSizeInBytes()))
+            .expireAfter(new Expiry<String, RoaringBitmap>() {
+                @Override
+                public long expireAfterCreate(String key, RoaringBitmap bitmap, long currentTime) {
+                    return TimeUnit.MINUTES.toNanos(LOCAL_EXPIRE);
+                }
+
+                @Override
+                public long expireAfterUpdate(String key, RoaringBitmap bitmap, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+
+                @Override
+                public long expireAfterRead(String key, RoaringBitmap bitmap, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .build();
+    //每应用一次修改加一，用于丢弃修改前开始加载的位图
+    private final AtomicLong changes = new AtomicLong();
+
+    @PostConstruct
+    private void initListener() {
+        container.addMessageListener((message, pattern) -> {
+            try {
+                JSONArray.parseArray(new String(message.getBody(), StandardCharsets.UTF_8), Change.class)
+                        .forEach(this::applyLocal);
+            } catch (Exception e) {
+                //无法解析时清空本地位图，之后重新从Redis或数据库加载
+                log.warn("处理点赞收藏位图修改通知时出现问题，清空本地位图", e);
+                changes.incrementAndGet();
+                local.invalidateAll();
+            }
+        }, new ChannelTopic(Const.FORUM_INTERACT_BITMAP_CHANNEL));
+    }
+
+    /**
+     * 用户是否对帖子进行过点赞或收藏
+     */
+    @Override
+    public boolean contains(String type, int tid, int uid) {
+        return this.bitmap(type, tid).contains(uid);
+    }
+
+    /**
+     * 帖子的点赞或收藏人数
+     */
+    @Override
+    public int cardinality(String type, int tid) {
+        return this.bitmap(type, tid).getCardinality();
+    }
+
+    /**
+     * 从一组帖子中找出用户点赞或收藏过的帖子，用于列表中批量标记当前用户的状态
+     * @param type 互动类型
+     * @param tids 帖子ID
+     * @param uid 用户ID
+     * @return 用户互动过的帖子ID
+     */
+    @Override
+    public Set<Integer> filterInteracted(String type, Collection<Integer> tids, int uid) {
+        Set<Integer> result = new HashSet<>();
+        tids.forEach(tid -> {
+            if(this.bitmap(type, tid).contains(uid))
+                result.add(tid);
+        });
+        return result;
+    }
+
+    /**
+     * 点赞收藏写入数据库之后调用，读取Redis中已有的位图并应用变化后写回，同时增加版本号，
+     * 然后修改本节点的位图并通知其他节点进行同样的修改
+     * 只有持有写入锁的节点会调用，读取与写回之间版本号变化说明有其他修改，这时删除位图等待重新加载
+     * @param type 互动类型
+     * @param added 新增的互动
+     * @param removed 取消的互动
+     */
+    @Override
+    public void applyChanges(String type, List<Interact> added, List<Interact> removed) {
+        Map<Integer, RoaringBitmap> adds = this.groupByTopic(added);
+        Map<Integer, RoaringBitmap> removes = this.groupByTopic(removed);
+        Set<Integer> tids = new HashSet<>(adds.keySet());
+        tids.addAll(removes.keySet());
+        if(tids.isEmpty()) return;
+        this.updateStored(type, tids, adds, removes);
+        List<Change> list = tids.stream()
+                .map(tid -> new Change(type, tid,
+                        adds.getOrDefault(tid, new RoaringBitmap()).toArray(),
+                        removes.getOrDefault(tid, new RoaringBitmap()).toArray(), false))
+                .toList();
+        this.publish(list);
+    }
+
+    /**
+     * 让帖子的位图失效，增加版本号并删除Redis与各个节点本地的位图，下次读取时从数据库重新加载
+     * 用于数据库已经写入但增量更新失败的情况
+     * @param type 互动类型
+     * @param tids 帖子ID
+     */
+    @Override
+    public void invalidate(String type, Collection<Integer> tids) {
+        if(tids.isEmpty()) return;
+        List<String> keys = new ArrayList<>();
+        tids.forEach(tid -> {
+            keys.add(this.key(type, tid));
+            keys.add(this.versionKey(type, tid));
+        });
+        byteRedisTemplate.execute(INVALIDATE_SCRIPT, keys, String.valueOf(REDIS_EXPIRE).getBytes(StandardCharsets.UTF_8));
+        this.publish(tids.stream()
+                .map(tid -> new Change(type, tid, new int[0], new int[0], true))
+                .toList());
+    }
+
+    private void publish(List<Change> list) {
+        list.forEach(this::applyLocal);
+        //本节点也会收到这条通知，重复应用同样的修改不会改变结果
+        template.convertAndSend(Const.FORUM_INTERACT_BITMAP_CHANNEL, JSONArray.toJSONString(list));
+    }
+
+    /**
+     * 在一次管道请求中读取位图与版本号，应用变化后通过一次脚本调用写回
+     */
+    private void updateStored(String type, Set<Integer> tids,
+                              Map<Integer, RoaringBitmap> adds, Map<Integer, RoaringBitmap> removes) {
+        List<Integer> ids = List.copyOf(tids);
+        List<Object> stored = byteRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            ids.forEach(tid -> {
+                connection.stringCommands().get(this.versionKey(type, tid).getBytes(StandardCharsets.UTF_8));
+                connection.stringCommands().get(this.key(type, tid).getBytes(StandardCharsets.UTF_8));
+            });
+            return null;
+        });
+        List<String> keys = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
+        args.add(String.valueOf(REDIS_EXPIRE).getBytes(StandardCharsets.UTF_8));
+        for (int i = 0; i < ids.size(); i++) {
+            int tid = ids.get(i);
+            keys.add(this.key(type, tid));
+            keys.add(this.versionKey(type, tid));
+            args.add(stored.get(2 * i) instanceof byte[] bytes ? bytes : new byte[0]);
+            args.add(this.modify(stored.get(2 * i + 1), adds.get(tid), removes.get(tid)));
+        }
+        byteRedisTemplate.execute(UPDATE_SCRIPT, keys, args.toArray());
+    }
+
+    /**
+     * 在Redis中保存的位图上应用变化
+     * @return 修改后的位图内容，没有保存的位图或者无法读取时为空数组
+     */
+    private byte[] modify(Object stored, RoaringBitmap add, RoaringBitmap remove) {
+        if(!(stored instanceof byte[] bytes)) return new byte[0];
+        RoaringBitmap bitmap = new RoaringBitmap();
+        try {
+            bitmap.deserialize(ByteBuffer.wrap(bytes));
+        } catch (IOException | RuntimeException e) {
+            return new byte[0];
+        }
+        if(add != null) bitmap.or(add);
+        if(remove != null) bitmap.andNot(remove);
+        bitmap.runOptimize();
+        return this.serialize(bitmap);
+    }
+
+    private void applyLocal(Change change) {
+        changes.incrementAndGet();
+        if(change.reset()) {
+            local.invalidate(this.key(change.type(), change.tid()));
+            return;
+        }
+        local.asMap().computeIfPresent(this.key(change.type(), change.tid()), (key, old) -> {
+            RoaringBitmap bitmap = old.clone();
+            bitmap.add(change.add());
+            for (int uid : change.remove()) bitmap.remove(uid);
+            return bitmap;
+        });
+    }
+
+    private RoaringBitmap bitmap(String type, int tid) {
+        String key = this.key(type, tid);
+        RoaringBitmap bitmap = local.getIfPresent(key);
+        if(bitmap != null) return bitmap;
+        long version = changes.get();
+        RoaringBitmap loaded = this.load(type, tid);
+        //加载期间有修改时不放入本地缓存，下次重新加载
+        local.asMap().compute(key, (k, old) -> changes.get() == version ? loaded : old);
+        return loaded;
+    }
+
+    private RoaringBitmap load(String type, int tid) {
+        String key = this.key(type, tid);
+        String versionKey = this.versionKey(type, tid);
+        List<Object> cached = byteRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.stringCommands().get(versionKey.getBytes(StandardCharsets.UTF_8));
+            connection.stringCommands().get(key.getBytes(StandardCharsets.UTF_8));
+            return null;
+        });
+        byte[] version = cached.get(0) instanceof byte[] bytes ? bytes : new byte[0];
+        if(cached.get(1) instanceof byte[] bytes) {
+            try {
+                RoaringBitmap bitmap = new RoaringBitmap();
+                bitmap.deserialize(ByteBuffer.wrap(bytes));
+                return bitmap;
+            } catch (IOException | RuntimeException e) {
+                log.warn("Redis中的点赞收藏位图 {} 无法读取，重新从数据库加载", key, e);
+            }
+        }
+        RoaringBitmap bitmap = new RoaringBitmap();
+        mapper.interactUids(tid, type).forEach(bitmap::add);
+        bitmap.runOptimize();
+        byteRedisTemplate.execute(SAVE_SCRIPT, List.of(key, versionKey),
+                version, this.serialize(bitmap), String.valueOf(REDIS_EXPIRE).getBytes(StandardCharsets.UTF_8));
+        return bitmap;
+    }
+
+    private byte[] serialize(RoaringBitmap bitmap) {
+        ByteBuffer buffer = ByteBuffer.allocate(bitmap.serializedSizeInBytes());
+        bitmap.serialize(buffer);
+        return buffer.array();
+    }
+
+    private Map<Integer, RoaringBitmap> groupByTopic(List<Interact> interacts) {
+        Map<Integer, RoaringBitmap> map = new HashMap<>();
+        interacts.forEach(interact -> map.computeIfAbsent(interact.getTid(), tid -> new RoaringBitmap())
+                .add(interact.getUid()));
+        return map;
+    }
+
+    private String key(String type, int tid) {
+        return Const.FORUM_INTERACT_BITMAP + type + ":" + tid;
+    }
+
+    private String versionKey(String type, int tid) {
+        return Const.FORUM_INTERACT_BITMAP + "version:" + type + ":" + tid;
+    }
+
+    //reset为true时直接丢弃本地位图，不应用add与remove
+    record Change(String type, int tid, int[] add, int[] remove, boolean reset) {}
+}
@@ -0,0 +1,432 @@
+package com.example.service.impl;
+
+import com.example.entity.dto.Interact;
+import com.example.entity.vo.response.TopicDetailVO;
+import com.example.mapper.TopicMapper;
+import com.example.service.TopicHotService;
+import com.example.service.TopicInteractIndexService;
+import com.example.service.TopicInteractService;
+import com.example.service.TopicStatsService;
+import com.example.utils.Const;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.stream.*;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 点赞与收藏的写入日志，请求线程只在一次管道请求中把操作追加到Redis Stream，
+ * 定时任务或者日志达到一定数量时通过消费组批量读取并写入数据库，写入成功后才确认并删除日志，
+ * 节点在写入过程中崩溃时，未确认的日志会在下次写入（包括重启后的第一次写入）时重新处理
+ * 同一时间整个集群只有一个节点读取日志，同一用户对同一帖子的多次操作按日志顺序只保留最后一次，
+ * 数据库写入过慢导致日志堆积时拒绝新的操作
+ * Redis中的Hash保存尚未写入数据库的状态，供查询是否已点赞时使用，
+ * 已经写入数据库的状态由帖子的点赞收藏位图索引回答，查询时无需访问数据库
+ */
+@Slf4j
+@Service
+public class TopicInteractServiceImpl implements TopicInteractService {
+
+    @Resource
+    TopicMapper mapper;
+
+    @Resource
+    TopicStatsService statsService;
+
+    @Resource
+    TopicHotService hotService;
+
+    @Resource
+    TopicInteractIndexService indexService;
+
+    @Resource
+    StringRedisTemplate template;
+
+    @Resource
+    TransactionTemplate transactionTemplate;
+
+    //每次从日志读取的操作数量，新增的操作达到这个数量时也会立即触发一次写入
+    private static final int FLUSH_SIZE = 1000;
+    //单次写入最多连续读取的批数，剩余的留到下一次写入
+    private static final int FLUSH_ROUNDS = 10;
+    //日志中的操作达到这个数量时不再接受新的操作，直到写入数据库后腾出空间
+    private static final int MAX_PENDING = 50000;
+    //Redis中待写入状态的保存时间，正常情况下几秒内就会写入数据库并删除
+    private static final long PENDING_EXPIRE = 600;
+    //每条写入语句最多包含的操作数量，避免语句过长超出数据库限制
+    private static final int WRITE_CHUNK = 500;
+    //读取日志的消费组与消费者，由于同一时间只有一个节点读取，所有节点共用同一个消费者，
+    //这样任意节点都能接手其他节点崩溃时留下的未确认日志
+    private static final String JOURNAL_GROUP = "flusher";
+    private static final String JOURNAL_CONSUMER = "flusher";
+    //写入锁的保存时间，每读取一批日志之前续期一次，持有锁的节点崩溃时最多这么久之后其他节点可以接手
+    //一批日志最多分成两段写入，远小于这个时间
+    private static final long LOCK_EXPIRE = 60;
+    //关闭时最多等待这么久把日志写入数据库，剩余的日志由其他节点或者重启后继续处理
+    private static final long SHUTDOWN_DRAIN_MILLIS = TimeUnit.SECONDS.toMillis(10);
+    private static final List<String> TYPES = List.of("like", "collect");
+    private static final RedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+    //KEYS: 写入锁  ARGV: 持有者标识, 保存时间
+    private static final RedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('expire', KEYS[1], ARGV[2]) else return 0 end",
+            Long.class);
+    //KEYS: 待写入状态  ARGV: 依次为字段与已经写入的状态
+    //只删除与已经写入的状态相同的字段，写入期间产生的新状态保留到下一次写入
+    private static final RedisScript<Long> CLEAR_SCRIPT = new DefaultRedisScript<>("""
+            for i = 1, #ARGV, 2 do
+                if redis.call('hget', KEYS[1], ARGV[i]) == ARGV[i + 1] then
+                    redis.call('hdel', KEYS[1], ARGV[i])
+                end
+            end
+            return 1
+            """, Long.class);
+
+    //日志中尚未写入的操作数量，每次写入后按日志实际长度校正
+    private final AtomicLong backlog = new AtomicLong();
+    private final AtomicBoolean flushing = new AtomicBoolean(false);
+    private final AtomicBoolean flushRequested = new AtomicBoolean(false);
+    private final ExecutorService flusher = Executors.newSingleThreadExecutor();
+
+    @PostConstruct
+    private void initJournal() {
+        this.createGroup();
+        Long size = template.opsForStream().size(Const.FORUM_INTERACT_JOURNAL);
+        backlog.set(size == null ? 0 : size);
+    }
+
+    /**
+     * 启动完成后立即处理上次关闭或崩溃时留下的日志
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void replayJournal() {
+        if(backlog.get() > 0)
+            log.info("发现 {} 条尚未写入数据库的点赞收藏日志，开始重新处理", backlog.get());
+        flusher.execute(this::flush);
+    }
+
+    /**
+     * 记录一次点赞或收藏操作，待写入状态与日志在同一次管道请求中写入Redis
+     * @param interact 操作
+     * @param state 点赞或取消
+     * @return 是否接受，日志堆积过多时返回false
+     */
+    @Override
+    public boolean submit(Interact interact, boolean state) {
+        if(backlog.get() >= MAX_PENDING) {
+            this.requestFlush();
+            return false;
+        }
+        String value = Boolean.toString(state);
+        template.executePipelined(new SessionCallback<>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                ops.opsForHash().put(interact.getType(), interact.toKey(), value);
+                ops.expire(interact.getType(), PENDING_EXPIRE, TimeUnit.SECONDS);
+                ops.opsForStream().add(StreamRecords.newRecord()
+                        .in(Const.FORUM_INTERACT_JOURNAL)
+                        .ofMap(Map.of(
+                                "type", interact.getType(),
+                                "key", interact.toKey(),
+                                "state", value,
+                                "time", String.valueOf(interact.getTime().getTime()))));
+                return null;
+            }
+        });
+        if(backlog.incrementAndGet() % FLUSH_SIZE == 0)
+            this.requestFlush();
+        return true;
+    }
+
+    /**
+     * 将日志中的操作批量写入数据库，同一时间整个集群只有一个线程执行写入，
+     * 每次先处理之前读取过但没有确认的日志，再读取新的日志，每读取一批之前为写入锁续期，
+     * 续期失败说明锁已经过期并可能被其他节点持有，立即停止读取
+     * 即使两个节点处理了同一批日志，写入时也只会计入数据库中实际发生的变化，不会重复计数
+     */
+    @Override
+    @Scheduled(fixedDelay = 3, timeUnit = TimeUnit.SECONDS)
+    public void flush() {
+        flushRequested.set(false);
+        if(!flushing.compareAndSet(false, true)) return;
+        try {
+            String token = UUID.randomUUID().toString();
+            if(Boolean.TRUE.equals(template.opsForValue()
+                    .setIfAbsent(Const.FORUM_INTERACT_JOURNAL_LOCK, token, LOCK_EXPIRE, TimeUnit.SECONDS))) {
+                try {
+                    this.consume(ReadOffset.from("0"));
+                    for (int i = 0; i < FLUSH_ROUNDS; i++) {
+                        if(!this.renewLock(token) || !this.consume(ReadOffset.lastConsumed())) break;
+                    }
+                } finally {
+                    template.execute(UNLOCK_SCRIPT, List.of(Const.FORUM_INTERACT_JOURNAL_LOCK), token);
+                }
+            }
+            //其他节点正在写入时也按日志实际长度校正，避免本节点的计数只增不减
+            Long size = template.opsForStream().size(Const.FORUM_INTERACT_JOURNAL);
+            backlog.set(size == null ? 0 : size);
+        } catch (Exception e) {
+            //日志没有确认，将在下次重试，Redis数据丢失导致消费组不存在时重新创建
+            log.error("写入点赞收藏数据时出现问题，将在下次重试", e);
+            this.createGroup();
+        } finally {
+            flushing.set(false);
+        }
+    }
+
+    /**
+     * 查询用户对帖子的点赞与收藏状态，先在一次管道请求中读取两种尚未写入数据库的状态，
+     * 没有待写入状态时再查询帖子的点赞收藏位图
+     * @param tid 帖子ID
+     * @param uid 用户ID
+     * @return 点赞与收藏状态
+     */
+    @Override
+    public TopicDetailVO.Interact findInteract(int tid, int uid) {
+        byte[] field = (tid + ":" + uid).getBytes(StandardCharsets.UTF_8);
+        List<Object> pending = template.executePipelined((RedisCallback<Object>) connection -> {
+            TYPES.forEach(type -> connection.hashCommands().hGet(type.getBytes(StandardCharsets.UTF_8), field));
+            return null;
+        });
+        boolean[] states = new boolean[TYPES.size()];
+        for (int i = 0; i < TYPES.size(); i++) {
+            Object value = pending.get(i);
+            states[i] = value != null ? Boolean.parseBoolean(value.toString()) : indexService.contains(TYPES.get(i), tid, uid);
+        }
+        return new TopicDetailVO.Interact(states[0], states[1]);
+    }
+
+    /**
+     * 从一组帖子中找出用户点赞或收藏过的帖子，先在一次请求中读取这些帖子尚未写入数据库的状态，
+     * 没有待写入状态的帖子再批量查询位图
+     * @param type 互动类型
+     * @param tids 帖子ID
+     * @param uid 用户ID
+     * @return 用户互动过的帖子ID
+     */
+    @Override
+    public Set<Integer> filterInteracted(String type, Collection<Integer> tids, int uid) {
+        List<Integer> ids = List.copyOf(new LinkedHashSet<>(tids));
+        if(ids.isEmpty()) return Set.of();
+        List<Object> pending = template.opsForHash().multiGet(type, ids.stream()
+                .map(tid -> (Object) (tid + ":" + uid))
+                .toList());
+        Set<Integer> result = new HashSet<>();
+        List<Integer> unknown = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            Object value = pending == null ? null : pending.get(i);
+            if(value == null)
+                unknown.add(ids.get(i));
+            else if(Boolean.parseBoolean(value.toString()))
+                result.add(ids.get(i));
+        }
+        if(!unknown.isEmpty())
+            result.addAll(indexService.filterInteracted(type, unknown, uid));
+        return result;
+    }
+
+    /**
+     * 关闭时尽量处理完已经读取但还没有确认的日志，只等待写入者自己的未确认日志清空，
+     * 其他节点持续追加的新日志保存在Redis中，由其他节点或者重启后继续处理，不需要等待
+     */
+    @PreDestroy
+    private void drainJournal() throws InterruptedException {
+        flusher.shutdown();
+        long deadline = System.currentTimeMillis() + SHUTDOWN_DRAIN_MILLIS;
+        flusher.awaitTermination(SHUTDOWN_DRAIN_MILLIS, TimeUnit.MILLISECONDS);
+        long pending;
+        while (true) {
+            this.flush();
+            pending = this.unacknowledged();
+            if(pending == 0 || System.currentTimeMillis() >= deadline) break;
+            Thread.sleep(200);
+        }
+        if(pending > 0)
+            log.warn("关闭时仍有 {} 条已读取的点赞收藏日志没有确认，将由其他节点或者重启后重新处理", pending);
+    }
+
+    /**
+     * 查询写入者已经读取但还没有确认的日志数量
+     * @return 未确认的日志数量，无法查询时为0
+     */
+    private long unacknowledged() {
+        try {
+            PendingMessagesSummary summary = template.opsForStream()
+                    .pending(Const.FORUM_INTERACT_JOURNAL, JOURNAL_GROUP);
+            if(summary == null) return 0;
+            return summary.getPendingMessagesPerConsumer().getOrDefault(JOURNAL_CONSUMER, 0L);
+        } catch (Exception e) {
+            log.warn("查询未确认的点赞收藏日志时出现问题", e);
+            return 0;
+        }
+    }
+
+    private boolean renewLock(String token) {
+        Long result = template.execute(RENEW_SCRIPT, List.of(Const.FORUM_INTERACT_JOURNAL_LOCK),
+                token, String.valueOf(LOCK_EXPIRE));
+        return Long.valueOf(1).equals(result);
+    }
+
+    /**
+     * 读取一批日志并写入数据库，写入成功后确认并删除这批日志
+     * @param offset 读取位置，0表示之前读取过但没有确认的日志
+     * @return 读到的日志是否已满一批，满时可能还有更多日志
+     */
+    private boolean consume(ReadOffset offset) {
+        List<MapRecord<String, Object, Object>> records = template.opsForStream().read(
+                Consumer.from(JOURNAL_GROUP, JOURNAL_CONSUMER),
+                StreamReadOptions.empty().count(FLUSH_SIZE),
+                StreamOffset.create(Const.FORUM_INTERACT_JOURNAL, offset));
+        if(records == null || records.isEmpty()) return false;
+        Map<String, Pending> latest = new LinkedHashMap<>();
+        records.forEach(record -> {
+            Pending pending = this.parseRecord(record);
+            if(pending != null)
+                latest.put(this.pendingKey(pending.interact()), pending);
+        });
+        this.save(latest.values());
+        RecordId[] ids = records.stream().map(MapRecord::getId).toArray(RecordId[]::new);
+        template.opsForStream().acknowledge(Const.FORUM_INTERACT_JOURNAL, JOURNAL_GROUP, ids);
+        template.opsForStream().delete(Const.FORUM_INTERACT_JOURNAL, ids);
+        this.clearPending(latest.values());
+        return records.size() >= FLUSH_SIZE;
+    }
+
+    private Pending parseRecord(MapRecord<String, Object, Object> record) {
+        Map<Object, Object> value = record.getValue();
+        try {
+            String type = value.get("type").toString();
+            String[] keys = value.get("key").toString().split(":");
+            Date time = new Date(Long.parseLong(value.get("time").toString()));
+            Interact interact = new Interact(Integer.parseInt(keys[0]), Integer.parseInt(keys[1]), time, type);
+            return new Pending(interact, Boolean.parseBoolean(value.get("state").toString()));
+        } catch (RuntimeException e) {
+            log.warn("跳过无法解析的点赞收藏日志 {}", record.getId(), e);
+            return null;
+        }
+    }
+
+    private void clearPending(Collection<Pending> pendings) {
+        Map<String, List<String>> args = new HashMap<>();
+        pendings.forEach(pending -> {
+            List<String> list = args.computeIfAbsent(pending.interact().getType(), type -> new ArrayList<>());
+            list.add(pending.interact().toKey());
+            list.add(Boolean.toString(pending.state()));
+        });
+        args.forEach((type, list) -> template.execute(CLEAR_SCRIPT, List.of(type), list.toArray()));
+    }
+
+    private void createGroup() {
+        try {
+            template.execute((RedisCallback<Object>) connection -> connection.streamCommands().xGroupCreate(
+                    Const.FORUM_INTERACT_JOURNAL.getBytes(StandardCharsets.UTF_8),
+                    JOURNAL_GROUP, ReadOffset.from("0"), true));
+        } catch (Exception ignored) {
+            //消费组已经存在
+        }
+    }
+
+    private void requestFlush() {
+        if(flushRequested.compareAndSet(false, true) && !flusher.isShutdown())
+            flusher.execute(this::flush);
+    }
+
+    private void save(Collection<Pending> pendings) {
+        Map<String, List<Interact>> check = new HashMap<>();
+        Map<String, List<Interact>> uncheck = new HashMap<>();
+        pendings.forEach(pending -> (pending.state() ? check : uncheck)
+                .computeIfAbsent(pending.interact().getType(), type -> new ArrayList<>())
+                .add(pending.interact()));
+        Set<String> types = new HashSet<>(check.keySet());
+        types.addAll(uncheck.keySet());
+        types.forEach(type -> {
+            this.writeInChunks(check.getOrDefault(type, List.of()), type, true);
+            this.writeInChunks(uncheck.getOrDefault(type, List.of()), type, false);
+        });
+    }
+
+    /**
+     * 分段写入数据库，每一段在单独的事务中先查出已经存在的记录，只写入状态确实发生变化的操作，
+     * 写入由集群中唯一持有写入锁的节点执行，查询与写入之间不会有其他写入者
+     * 每一段提交之后立即更新位图、计数与热度，后续的段失败时已经提交的段不会丢失这些更新
+     * @param interacts 同一类型、同一目标状态的操作
+     * @param type 互动类型
+     * @param state 点赞或取消
+     */
+    private void writeInChunks(List<Interact> interacts, String type, boolean state) {
+        for (int i = 0; i < interacts.size(); i += WRITE_CHUNK) {
+            List<Interact> chunk = interacts.subList(i, Math.min(i + WRITE_CHUNK, interacts.size()));
+            List<Interact> written = transactionTemplate.execute(status -> {
+                Set<String> existing = new HashSet<>(mapper.existingInteracts(chunk, type));
+                List<Interact> list = chunk.stream()
+                        .filter(interact -> existing.contains(interact.toKey()) != state)
+                        .toList();
+                if(!list.isEmpty()) {
+                    if(state)
+                        mapper.addInteract(list, type);
+                    else
+                        mapper.deleteInteract(list, type);
+                }
+                return list;
+            });
+            if(written != null && !written.isEmpty())
+                this.applyWritten(written, type, state);
+        }
+    }
+
+    /**
+     * 一段写入提交之后更新位图、计数与热度，计数与热度只按数据库中实际发生的变化计算，
+     * 重复点赞或重放日志不会重复计入
+     * 数据库已经提交而这里失败时，重放日志会把这些操作识别为没有变化，因此直接让位图失效并重新统计计数，
+     * 保证它们最终与数据库一致，之后继续抛出异常让这批日志稍后重试
+     * @param written 已经提交的操作
+     * @param type 互动类型
+     * @param state 点赞或取消
+     */
+    private void applyWritten(List<Interact> written, String type, boolean state) {
+        Map<Integer, Integer> deltas = new HashMap<>();
+        written.forEach(interact -> deltas.merge(interact.getTid(), state ? 1 : -1, Integer::sum));
+        try {
+            indexService.applyChanges(type, state ? written : List.of(), state ? List.of() : written);
+            statsService.increaseInteractCount(deltas, type);
+            hotService.increaseScore(deltas, type);
+        } catch (RuntimeException exception) {
+            try {
+                indexService.invalidate(type, deltas.keySet());
+                statsService.recountStats(deltas.keySet());
+            } catch (RuntimeException repair) {
+                exception.addSuppressed(repair);
+                log.error("点赞收藏写入数据库后无法修复位图与计数，涉及帖子 {}", deltas.keySet(), repair);
+            }
+            throw exception;
+        }
+    }
+
+    private String pendingKey(Interact interact) {
+        return interact.getType() + ":" + interact.toKey();
+    }
+
+    private record Pending(Interact interact, boolean state) {}
+}
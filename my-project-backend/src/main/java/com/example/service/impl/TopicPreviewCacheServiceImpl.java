@@ -0,0 +1,105 @@
+package com.example.service.impl;
+
+import com.example.service.TopicPreviewCacheService;
+import com.example.utils.CacheUtils;
+import com.example.utils.Const;
+import jakarta.annotation.Resource;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 帖子列表缓存的精确失效
+ * 每个帖子记录包含它的缓存页，编辑时只清除这些页；发帖只影响对应类型与全部类型的第一页，
+ * 以及会整体后移的页码分页缓存，其余游标分页缓存保持不变
+ */
+@Service
+public class TopicPreviewCacheServiceImpl implements TopicPreviewCacheService {
+
+    @Resource
+    CacheUtils cacheUtils;
+
+    @Resource
+    StringRedisTemplate template;
+
+    //帖子与所在缓存页的对应关系保存时间，需要长于列表缓存在Redis中的实际保存时间
+    private static final long OWNER_EXPIRE = 180;
+
+    @Override
+    public String pageKey(int page, int type) {
+        return cacheUtils.namespaceKey(this.pageNamespace(type), String.valueOf(page));
+    }
+
+    @Override
+    public String cursorKey(String cursor, int type) {
+        return cacheUtils.namespaceKey(this.cursorNamespace(type), cursor);
+    }
+
+    /**
+     * 记录缓存页中包含的帖子，之后这些帖子被编辑时可以直接找到需要清除的缓存页
+     * @param key 缓存页的键
+     * @param tids 页中的帖子ID
+     */
+    @Override
+    public void trackTopics(String key, Collection<Integer> tids) {
+        template.executePipelined(new SessionCallback<>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                tids.forEach(tid -> {
+                    String ownerKey = Const.FORUM_TOPIC_PREVIEW_OWNER + tid;
+                    ops.opsForSet().add(ownerKey, key);
+                    ops.expire(ownerKey, OWNER_EXPIRE, TimeUnit.SECONDS);
+                });
+                return null;
+            }
+        });
+    }
+
+    /**
+     * 新帖子总是最新的，只会出现在游标分页的第一页，但会使页码分页的所有页整体后移
+     * @param type 帖子类型
+     */
+    @Override
+    public void onTopicCreated(int type) {
+        cacheUtils.deleteCache(List.of(this.cursorKey("", type), this.cursorKey("", 0)));
+        cacheUtils.invalidateNamespace(this.pageNamespace(type));
+        cacheUtils.invalidateNamespace(this.pageNamespace(0));
+    }
+
+    /**
+     * 编辑帖子时清除包含它的缓存页，修改类型时帖子在新旧类型中的位置都会变化，
+     * 旧类型的页码分页整体前移，新类型中无法确定它会落在哪一页，因此整体失效
+     * @param tid 帖子ID
+     * @param oldType 修改前的类型
+     * @param newType 修改后的类型
+     */
+    @Override
+    public void onTopicUpdated(int tid, int oldType, int newType) {
+        String ownerKey = Const.FORUM_TOPIC_PREVIEW_OWNER + tid;
+        Set<String> keys = template.opsForSet().members(ownerKey);
+        if(keys != null && !keys.isEmpty())
+            cacheUtils.deleteCache(keys);
+        template.delete(ownerKey);
+        if(oldType != newType) {
+            cacheUtils.invalidateNamespace(this.pageNamespace(oldType));
+            cacheUtils.invalidateNamespace(this.pageNamespace(newType));
+            cacheUtils.invalidateNamespace(this.cursorNamespace(newType));
+        }
+    }
+
+    private String pageNamespace(int type) {
+        return Const.FORUM_TOPIC_PREVIEW_CACHE + "page:" + type + ":";
+    }
+
+    private String cursorNamespace(int type) {
+        return Const.FORUM_TOPIC_PREVIEW_CACHE + "cursor:" + type + ":";
+    }
+}
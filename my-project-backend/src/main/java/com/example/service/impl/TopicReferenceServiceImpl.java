@@ -0,0 +1,110 @@
+package com.example.service.impl;
+
+import com.alibaba.fastjson2.JSONObject;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.example.entity.dto.Topic;
+import com.example.entity.dto.TopicType;
+import com.example.entity.vo.response.TopicTopVO;
+import com.example.entity.vo.response.TopicTypeVO;
+import com.example.mapper.TopicMapper;
+import com.example.mapper.TopicTypeMapper;
+import com.example.service.TopicReferenceService;
+import com.example.utils.Const;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 帖子类型与置顶帖子这类很少变化的数据直接保存在内存快照中，请求不再访问数据库
+ * 数据变化时通过Redis发布订阅通知所有节点重新加载，另有定时任务兜底
+ */
+@Slf4j
+@Service
+public class TopicReferenceServiceImpl implements TopicReferenceService {
+
+    @Resource
+    TopicTypeMapper typeMapper;
+
+    @Resource
+    TopicMapper topicMapper;
+
+    @Resource
+    StringRedisTemplate template;
+
+    @Resource
+    RedisMessageListenerContainer container;
+
+    private volatile Snapshot snapshot;
+
+    @PostConstruct
+    private void initSnapshot() {
+        this.reload();
+        container.addMessageListener((message, pattern) -> this.reload(),
+                new ChannelTopic(Const.FORUM_REFERENCE_CHANNEL));
+    }
+
+    @Override
+    public Snapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * 从数据库重新加载快照，加载失败时继续使用旧快照
+     */
+    @Override
+    @Scheduled(initialDelay = 10, fixedDelay = 10, timeUnit = TimeUnit.MINUTES)
+    public synchronized void reload() {
+        try {
+            List<TopicTypeVO> types = typeMapper.selectList(null)
+                    .stream()
+                    .map(type -> type.asViewObject(TopicTypeVO.class))
+                    .toList();
+            List<TopicTopVO> tops = topicMapper.selectList(Wrappers.<Topic>query()
+                            .select("id", "title", "time")
+                            .eq("top", 1))
+                    .stream()
+                    .map(this::toTopView)
+                    .toList();
+            Set<Integer> typeIds = types.stream()
+                    .map(TopicTypeVO::getId)
+                    .collect(Collectors.toUnmodifiableSet());
+            snapshot = new Snapshot(types, this.etag(types), tops, this.etag(tops), typeIds);
+        } catch (Exception e) {
+            if(snapshot == null) throw e;
+            log.warn("重新加载帖子类型与置顶帖子失败，继续使用旧数据", e);
+        }
+    }
+
+    /**
+     * 通知所有节点重新加载快照，修改帖子类型或置顶状态之后调用
+     */
+    @Override
+    public void publishRefresh() {
+        template.convertAndSend(Const.FORUM_REFERENCE_CHANNEL, "refresh");
+    }
+
+    private TopicTopVO toTopView(Topic topic) {
+        TopicTopVO vo = new TopicTopVO();
+        vo.setId(topic.getId());
+        vo.setTitle(topic.getTitle());
+        vo.setTime(topic.getTime());
+        return vo;
+    }
+
+    private String etag(List<?> data) {
+        byte[] bytes = JSONObject.toJSONString(data).getBytes(StandardCharsets.UTF_8);
+        return "\"" + DigestUtils.md5DigestAsHex(bytes) + "\"";
+    }
+}
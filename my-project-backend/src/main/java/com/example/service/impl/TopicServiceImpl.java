@@ -2,6 +2,7 @@ package com.example.service.impl;
 
 import com.alibaba.fastjson2.JSONArray;
 import com.alibaba.fastjson2.JSONObject;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.core.toolkit.Wrappers;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
@@ -9,89 +10,110 @@ import com.example.entity.dto.*;
 import com.example.entity.vo.request.AddCommentVO;
 import com.example.entity.vo.request.TopicCreateVO;
 import com.example.entity.vo.request.TopicUpdateVO;
+import com.example.entity.vo.response.CommentPageVO;
 import com.example.entity.vo.response.CommentVO;
 import com.example.entity.vo.response.TopicDetailVO;
+import com.example.entity.vo.response.TopicPageVO;
 import com.example.entity.vo.response.TopicPreviewVO;
-import com.example.entity.vo.response.TopicTopVO;
 import com.example.mapper.*;
 import com.example.service.NotificationService;
+import com.example.service.TopicHotService;
+import com.example.service.TopicInteractService;
+import com.example.service.TopicPreviewCacheService;
+import com.example.service.TopicReferenceService;
 import com.example.service.TopicService;
+import com.example.service.TopicStatsService;
+import com.example.service.UserCardService;
 import com.example.utils.CacheUtils;
 import com.example.utils.Const;
+import com.example.utils.CopyPlan;
+import com.example.utils.DeltaAnalyzer;
 import com.example.utils.FlowUtils;
-import jakarta.annotation.PostConstruct;
 import jakarta.annotation.Resource;
-import org.springframework.beans.BeanUtils;
+import jakarta.validation.ValidationException;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Service
 public class TopicServiceImpl extends ServiceImpl<TopicMapper, Topic> implements TopicService {
 
-    @Resource
-    TopicTypeMapper mapper;
-
     @Resource
     FlowUtils flowUtils;
 
     @Resource
     CacheUtils cacheUtils;
 
+    @Resource
+    TopicPreviewCacheService previewCache;
+
     @Resource
     AccountMapper accountMapper;
 
     @Resource
-    AccountDetailsMapper accountDetailsMapper;
+    TopicCommentMapper commentMapper;
 
     @Resource
-    AccountPrivacyMapper accountPrivacyMapper;
+    NotificationService notificationService;
 
     @Resource
-    TopicCommentMapper commentMapper;
+    TopicStatsService statsService;
 
     @Resource
-    StringRedisTemplate template;
+    TopicHotService hotService;
 
     @Resource
-    NotificationService notificationService;
+    TopicReferenceService referenceService;
 
-    private Set<Integer> types = null;
-    @PostConstruct
-    private void initTypes() {
-        types = this.listTypes()
-                .stream()
-                .map(TopicType::getId)
-                .collect(Collectors.toSet());
-    }
+    @Resource
+    UserCardService userCardService;
 
-    @Override
-    public List<TopicType> listTypes() {
-        return mapper.selectList(null);
-    }
+    @Resource
+    TopicInteractService interactService;
+
+    @Resource
+    StringRedisTemplate template;
+
+    //被引用的评论已经删除时显示的内容
+    private static final String DELETED_QUOTE = "此评论已被删除";
+
+    //帖子与评论的最大文本长度，以及预览文本长度
+    private static final int TOPIC_TEXT_LIMIT = 20000;
+    private static final int COMMENT_TEXT_LIMIT = 2000;
+    private static final int PREVIEW_LENGTH = 300;
+    //不存在的帖子标记的保存时间，期间重复访问不再查询数据库，秒为单位
+    private static final long MISSING_EXPIRE = 30;
+
+    //帖子列表只需要读取的字段，不包含完整的帖子内容
+    private static final String[] PREVIEW_COLUMNS = {
+            "id", "title", "type", "time", "uid", "preview_text", "preview_images"
+    };
 
     @Override
     public String createTopic(int uid, TopicCreateVO vo) {
-        if(!textLimitCheck(vo.getContent(), 20000))
+        DeltaAnalyzer.Result content = this.analyzeContent(vo.getContent(), TOPIC_TEXT_LIMIT);
+        if(content.malformed())
+            return "文章格式不正确，发文失败！";
+        if(!content.valid())
             return "文章内容太多，发文失败！";
-        if(!types.contains(vo.getType()))
+        if(!referenceService.snapshot().typeIds().contains(vo.getType()))
             return "文章类型非法！";
         String key = Const.FORUM_TOPIC_CREATE_COUNTER + uid;
         if(!flowUtils.limitPeriodCounterCheck(key, 3, 3600))
             return "发文频繁，请稍后再试！";
         Topic topic = new Topic();
-        BeanUtils.copyProperties(vo, topic);
-        topic.setContent(vo.getContent().toJSONString());
+        CopyPlan.copyProperties(vo, topic);
+        topic.setContent(content.normalized());
         topic.setUid(uid);
         topic.setTime(new Date());
+        this.fillPreview(topic, content);
         if(this.save(topic)) {
-            cacheUtils.deleteCachePattern(Const.FORUM_TOPIC_PREVIEW_CACHE + "*");
+            //新帖子的ID可能在发布前被访问过，清除不存在的标记
+            template.delete(Const.FORUM_TOPIC_DETAIL_MISSING + topic.getId());
+            previewCache.onTopicCreated(topic.getType());
             return null;
         } else {
             return "内部错误，请联系管理员！";
@@ -100,42 +122,67 @@ public class TopicServiceImpl extends ServiceImpl<TopicMapper, Topic> implements
 
     @Override
     public String updateTopic(int uid, TopicUpdateVO vo) {
-        if(!textLimitCheck(vo.getContent(), 20000))
+        DeltaAnalyzer.Result content = this.analyzeContent(vo.getContent(), TOPIC_TEXT_LIMIT);
+        if(content.malformed())
+            return "文章格式不正确，发文失败！";
+        if(!content.valid())
             return "文章内容太多，发文失败！";
-        if(!types.contains(vo.getType()))
+        if(!referenceService.snapshot().typeIds().contains(vo.getType()))
             return "文章类型非法！";
+        Topic old = baseMapper.selectOne(Wrappers.<Topic>query()
+                .select("id", "type")
+                .eq("uid", uid)
+                .eq("id", vo.getId()));
+        if(old == null) return null;
+        Topic preview = this.fillPreview(new Topic(), content);
         baseMapper.update(null, Wrappers.<Topic>update()
                 .eq("uid", uid)
                 .eq("id", vo.getId())
                 .set("title", vo.getTitle())
-                .set("content", vo.getContent().toString())
+                .set("content", content.normalized())
                 .set("type", vo.getType())
+                .set("preview_text", preview.getPreviewText())
+                .set("preview_images", preview.getPreviewImages())
         );
+        previewCache.onTopicUpdated(vo.getId(), old.getType(), vo.getType());
+        hotService.onTopicUpdated(vo.getId(), old.getType(), vo.getType(), vo.getTitle());
+        cacheUtils.deleteCache(Const.FORUM_TOPIC_DETAIL_CACHE + vo.getId());
         return null;
     }
 
     @Override
     public String createComment(int uid, AddCommentVO vo) {
-        if(!textLimitCheck(JSONObject.parseObject(vo.getContent()), 2000))
+        DeltaAnalyzer.Result content = DeltaAnalyzer.analyze(vo.getContent(), COMMENT_TEXT_LIMIT, PREVIEW_LENGTH);
+        if(content.malformed())
+            return "评论格式不正确，发表失败！";
+        if(!content.valid())
             return "评论内容太多，发表失败！";
         String key = Const.FORUM_TOPIC_COMMENT_COUNTER + uid;
         if(!flowUtils.limitPeriodCounterCheck(key, 2, 60))
             return "发表评论频繁，请稍后再试！";
         TopicComment comment = new TopicComment();
         comment.setUid(uid);
-        BeanUtils.copyProperties(vo, comment);
+        CopyPlan.copyProperties(vo, comment);
+        comment.setContent(content.normalized());
         comment.setTime(new Date());
+        TopicComment quoted = null;
+        if(vo.getQuote() > 0) {
+            //发表时直接保存被引用评论的摘要，展示评论列表时无需再读取被引用的评论
+            quoted = commentMapper.selectById(vo.getQuote());
+            comment.setQuoteText(quoted == null ? DELETED_QUOTE : this.quoteSnippet(quoted.getContent()));
+        }
         commentMapper.insert(comment);
+        statsService.increaseCommentCount(vo.getTid(), 1);
+        hotService.increaseScore(Map.of(vo.getTid(), 1), "comment");
         Topic topic = baseMapper.selectById(vo.getTid());
         Account account = accountMapper.selectById(uid);
         if(vo.getQuote() > 0) {
-            TopicComment com = commentMapper.selectById(vo.getQuote());
-            if(!Objects.equals(account.getId(), com.getUid())) {
+            if(quoted != null && !Objects.equals(account.getId(), quoted.getUid())) {
                 notificationService.addNotification(
-                        com.getUid(),
+                        quoted.getUid(),
                         "您有新的帖子评论回复",
                         account.getUsername()+" 回复了你发表的评论，快去看看吧！",
-                        "success", "/index/topic-detail/"+com.getTid()
+                        "success", "/index/topic-detail/"+quoted.getTid()
                 );
             }
         } else if (!Objects.equals(account.getId(), topic.getUid())) {
@@ -152,24 +199,54 @@ public class TopicServiceImpl extends ServiceImpl<TopicMapper, Topic> implements
     @Override
     public List<CommentVO> comments(int tid, int pageNumber) {
         Page<TopicComment> page = Page.of(pageNumber, 10);
-        commentMapper.selectPage(page, Wrappers.<TopicComment>query().eq("tid", tid));
-        return page.getRecords().stream().map(dto -> {
+        page.setSearchCount(false);
+        commentMapper.selectPage(page, Wrappers.<TopicComment>query()
+                .eq("tid", tid)
+                .orderByAsc("time", "id"));
+        return this.resolveToComment(page.getRecords());
+    }
+
+    /**
+     * 按时间顺序以游标方式读取评论，游标为上一页最后一条评论的时间与ID，
+     * 查询直接定位到(tid, time, id)索引中的位置，不会随页数增加而变慢
+     * @param tid 帖子ID
+     * @param cursor 游标，格式为 时间戳-评论ID，为空时从第一条评论开始
+     * @return 评论列表与下一页游标
+     */
+    @Override
+    public CommentPageVO comments(int tid, String cursor) {
+        QueryWrapper<TopicComment> wrapper = Wrappers.<TopicComment>query().eq("tid", tid);
+        PageCursor position = this.parseCursor(cursor);
+        if(position != null)
+            wrapper.and(w -> w.gt("time", position.time())
+                    .or(o -> o.eq("time", position.time()).gt("id", position.id())));
+        wrapper.orderByAsc("time", "id").last("limit 10");
+        List<TopicComment> comments = commentMapper.selectList(wrapper);
+        CommentPageVO vo = new CommentPageVO();
+        vo.setList(this.resolveToComment(comments));
+        if(comments.size() == 10) {
+            TopicComment last = comments.get(comments.size() - 1);
+            vo.setNext(last.getTime().getTime() + "-" + last.getId());
+        }
+        return vo;
+    }
+
+    private List<CommentVO> resolveToComment(List<TopicComment> comments) {
+        if(comments.isEmpty()) return List.of();
+        Map<Integer, UserCard> cards = userCardService.findUserCards(comments
+                .stream()
+                .map(TopicComment::getUid)
+                .toList());
+        Map<Integer, String> legacyQuotes = this.resolveLegacyQuotes(comments);
+        return comments.stream().map(dto -> {
             CommentVO vo = new CommentVO();
-            BeanUtils.copyProperties(dto, vo);
-            if(dto.getQuote() > 0) {
-                TopicComment comment = commentMapper.selectOne(Wrappers.<TopicComment>query()
-                        .eq("id", dto.getQuote()).orderByAsc("time"));
-                if(comment != null) {
-                    JSONObject object = JSONObject.parseObject(comment.getContent());
-                    StringBuilder builder = new StringBuilder();
-                    this.shortContent(object.getJSONArray("ops"), builder, ignore -> {});
-                    vo.setQuote(builder.toString());
-                } else {
-                    vo.setQuote("此评论已被删除");
-                }
-            }
+            CopyPlan.copyProperties(dto, vo);
+            if(dto.getQuote() > 0)
+                vo.setQuote(Optional.ofNullable(dto.getQuoteText())
+                        .orElseGet(() -> legacyQuotes.get(dto.getQuote())));
             CommentVO.User user = new CommentVO.User();
-            this.fillUserDetailsByPrivacy(user, dto.getUid());
+            Optional.ofNullable(cards.get(dto.getUid()))
+                    .ifPresent(card -> CopyPlan.copyProperties(card, user));
             vo.setUser(user);
             return vo;
         }).toList();
@@ -177,157 +254,276 @@ public class TopicServiceImpl extends ServiceImpl<TopicMapper, Topic> implements
 
     @Override
     public void deleteComment(int id, int uid) {
-        commentMapper.delete(Wrappers.<TopicComment>query().eq("id", id).eq("uid", uid));
+        TopicComment comment = commentMapper.selectOne(Wrappers.<TopicComment>query().eq("id", id).eq("uid", uid));
+        if(comment != null && commentMapper.deleteById(id) > 0) {
+            statsService.increaseCommentCount(comment.getTid(), -1);
+            hotService.increaseScore(Map.of(comment.getTid(), -1), "comment");
+            commentMapper.update(null, Wrappers.<TopicComment>update()
+                    .eq("quote", id)
+                    .set("quote_text", DELETED_QUOTE));
+        }
     }
 
     @Override
     public List<TopicPreviewVO> listTopicCollects(int uid) {
-        return baseMapper.collectTopics(uid)
+        List<TopicPreviewVO> list = baseMapper.collectTopics(uid)
                 .stream()
                 .map(topic -> {
                     TopicPreviewVO vo = new TopicPreviewVO();
-                    BeanUtils.copyProperties(topic, vo);
+                    CopyPlan.copyProperties(topic, vo);
                     return vo;
                 })
                 .toList();
+        Set<Integer> liked = interactService.filterInteracted("like",
+                list.stream().map(TopicPreviewVO::getId).toList(), uid);
+        list.forEach(vo -> vo.setLiked(liked.contains(vo.getId())));
+        return list;
     }
 
     @Override
-    public List<TopicPreviewVO> listTopicByPage(int pageNumber, int type) {
-        String key = Const.FORUM_TOPIC_PREVIEW_CACHE + pageNumber + ":" + type;
-        List<TopicPreviewVO> list = cacheUtils.takeListFromCache(key, TopicPreviewVO.class);
-        if(list != null)
-            return list;
-        Page<Topic> page = Page.of(pageNumber, 10);
-        if(type == 0)
-            baseMapper.selectPage(page, Wrappers.<Topic>query().orderByDesc("time"));
-        else
-            baseMapper.selectPage(page, Wrappers.<Topic>query().eq("type", type).orderByDesc("time"));
-        List<Topic> topics = page.getRecords();
-        if(topics.isEmpty()) return null;
-        list = topics.stream().map(this::resolveToPreview).toList();
-        cacheUtils.saveListToCache(key, list, 60);
-        return list;
+    public List<TopicPreviewVO> listTopicByPage(int pageNumber, int type, int uid) {
+        return this.markLiked(this.listTopicByPage(pageNumber, type), uid);
+    }
+
+    private List<TopicPreviewVO> listTopicByPage(int pageNumber, int type) {
+        String key = previewCache.pageKey(pageNumber, type);
+        return cacheUtils.takeListFromCache(key, TopicPreviewVO.class, 60, () -> {
+            Page<Topic> page = Page.of(pageNumber, 10);
+            if(type == 0)
+                baseMapper.selectPage(page, Wrappers.<Topic>query().select(PREVIEW_COLUMNS).orderByDesc("time", "id"));
+            else
+                baseMapper.selectPage(page, Wrappers.<Topic>query().select(PREVIEW_COLUMNS).eq("type", type).orderByDesc("time", "id"));
+            List<Topic> topics = page.getRecords();
+            if(topics.isEmpty()) return null;
+            previewCache.trackTopics(key, topics.stream().map(Topic::getId).toList());
+            return this.resolveToPreview(topics);
+        });
     }
 
+    /**
+     * 以上一页最后一个帖子的发布时间和ID作为游标进行分页，查询只需沿索引向后读取，
+     * 不会像页码分页那样随着页数增加而扫描越来越多的数据
+     * 只有第一页进入缓存，之后的页面由客户端提供的游标决定，直接查询数据库，避免任意游标都生成新的缓存键
+     * @param cursor 游标，格式为 时间戳-帖子ID，为空时视为第一页
+     * @param type 帖子类型，0表示全部
+     * @return 帖子列表以及下一页游标
+     */
     @Override
-    public List<TopicTopVO> listTopTopics() {
-        List<Topic> topics = baseMapper.selectList(Wrappers.<Topic>query()
-                .select("id", "title", "time")
-                .eq("top", 1));
-        return topics.stream().map(topic -> {
-            TopicTopVO vo = new TopicTopVO();
-            BeanUtils.copyProperties(topic, vo);
+    public TopicPageVO listTopicByCursor(String cursor, int type, int uid) {
+        TopicPageVO shared = this.listTopicByCursor(cursor, type);
+        TopicPageVO vo = new TopicPageVO();
+        vo.setList(this.markLiked(shared.getList(), uid));
+        vo.setNext(shared.getNext());
+        return vo;
+    }
+
+    private TopicPageVO listTopicByCursor(String cursor, int type) {
+        PageCursor position = this.parseCursor(cursor);
+        if(position != null)
+            return this.loadTopicPage(position, type);
+        String key = previewCache.cursorKey("", type);
+        return cacheUtils.takeFromCache(key, TopicPageVO.class, 60, () -> {
+            TopicPageVO vo = this.loadTopicPage(null, type);
+            previewCache.trackTopics(key, vo.getList().stream().map(TopicPreviewVO::getId).toList());
+            return vo;
+        });
+    }
+
+    /**
+     * 为当前用户标记列表中点赞过的帖子，缓存中的预览由所有用户共享，复制一份之后再填入，
+     * 整页只进行一次待写入状态读取与一次位图批量查询
+     * @param shared 共享的预览列表
+     * @param uid 当前用户ID
+     * @return 标记之后的预览列表
+     */
+    private List<TopicPreviewVO> markLiked(List<TopicPreviewVO> shared, int uid) {
+        if(shared == null || shared.isEmpty()) return shared;
+        Set<Integer> liked = interactService.filterInteracted("like",
+                shared.stream().map(TopicPreviewVO::getId).toList(), uid);
+        return shared.stream().map(preview -> {
+            TopicPreviewVO vo = new TopicPreviewVO();
+            CopyPlan.copyProperties(preview, vo);
+            vo.setLiked(liked.contains(preview.getId()));
             return vo;
         }).toList();
     }
 
+    private TopicPageVO loadTopicPage(PageCursor position, int type) {
+        QueryWrapper<Topic> wrapper = Wrappers.<Topic>query().select(PREVIEW_COLUMNS);
+        if(type != 0)
+            wrapper.eq("type", type);
+        if(position != null)
+            wrapper.and(w -> w.lt("time", position.time())
+                    .or(o -> o.eq("time", position.time()).lt("id", position.id())));
+        wrapper.orderByDesc("time", "id").last("limit 10");
+        List<Topic> topics = baseMapper.selectList(wrapper);
+        TopicPageVO vo = new TopicPageVO();
+        vo.setList(topics.isEmpty() ? List.of() : this.resolveToPreview(topics));
+        if(topics.size() == 10) {
+            Topic last = topics.get(topics.size() - 1);
+            vo.setNext(last.getTime().getTime() + "-" + last.getId());
+        }
+        return vo;
+    }
+
+    /**
+     * 解析 时间戳-ID 格式的分页游标，数字位数受到限制
+     * 格式不正确或者数值超出范围时直接拒绝请求，而不是返回第一页，避免客户端翻页时反复读到重复的数据
+     * @param cursor 游标
+     * @return 游标位置，游标为空表示第一页，这时为null
+     * @throws ValidationException 游标不为空但无法解析时抛出
+     */
+    private PageCursor parseCursor(String cursor) {
+        if(cursor == null || cursor.isEmpty()) return null;
+        if(!cursor.matches("\\d{1,18}-\\d{1,9}"))
+            throw new ValidationException("分页游标格式不正确: " + cursor);
+        String[] position = cursor.split("-");
+        try {
+            return new PageCursor(new Date(Long.parseLong(position[0])), Integer.parseInt(position[1]));
+        } catch (NumberFormatException exception) {
+            throw new ValidationException("分页游标超出范围: " + cursor);
+        }
+    }
+
     @Override
     public TopicDetailVO getTopic(int tid, int uid) {
+        TopicDetailVO shared = cacheUtils.takeFromCache(Const.FORUM_TOPIC_DETAIL_CACHE + tid,
+                TopicDetailVO.class, 60, () -> this.loadTopicDetail(tid));
+        if(shared == null) return null;
+        //缓存对象由所有请求共享，复制一份之后再填入当前用户相关的数据
         TopicDetailVO vo = new TopicDetailVO();
-        Topic topic = baseMapper.selectById(tid);
-        BeanUtils.copyProperties(topic, vo);
-        TopicDetailVO.Interact interact = new TopicDetailVO.Interact(
-                hasInteract(tid, uid, "like"),
-                hasInteract(tid, uid, "collect")
-        );
-        vo.setInteract(interact);
+        CopyPlan.copyProperties(shared, vo);
+        vo.setInteract(interactService.findInteract(tid, uid));
         TopicDetailVO.User user = new TopicDetailVO.User();
-        vo.setUser(this.fillUserDetailsByPrivacy(user, topic.getUid()));
-        vo.setComments(commentMapper.selectCount(Wrappers.<TopicComment>query().eq("tid", tid)));
+        Optional.ofNullable(userCardService.findUserCard(shared.getUser().getId()))
+                .ifPresent(card -> CopyPlan.copyProperties(card, user));
+        vo.setUser(user);
+        vo.setComments((long) statsService.findStats(tid).getComments());
         return vo;
     }
 
-    @Override
-    public void interact(Interact interact, boolean state) {
-        String type = interact.getType();
-        synchronized (type.intern()) {
-            template.opsForHash().put(type, interact.toKey(), Boolean.toString(state));
-            this.saveInteractSchedule(type);
+    /**
+     * 加载帖子详情中所有用户都相同的部分，作者只记录ID，展示信息在读取时从用户信息缓存获取
+     * 评论数量变化频繁，单独从计数服务读取，不放在这里以免评论时反复清除缓存
+     * 帖子不存在时写入一个短时间的标记，反复访问不存在的帖子时不会每次都查询数据库，
+     * 只在详情缓存未命中时检查标记，正常帖子的读取不受影响
+     * @param tid 帖子ID
+     * @return 帖子详情，帖子不存在时为null
+     */
+    private TopicDetailVO loadTopicDetail(int tid) {
+        String missingKey = Const.FORUM_TOPIC_DETAIL_MISSING + tid;
+        if(Boolean.TRUE.equals(template.hasKey(missingKey))) return null;
+        Topic topic = baseMapper.selectById(tid);
+        if(topic == null) {
+            template.opsForValue().set(missingKey, "", MISSING_EXPIRE, TimeUnit.SECONDS);
+            return null;
         }
+        TopicDetailVO vo = new TopicDetailVO();
+        CopyPlan.copyProperties(topic, vo);
+        TopicDetailVO.User user = new TopicDetailVO.User();
+        user.setId(topic.getUid());
+        vo.setUser(user);
+        return vo;
     }
 
-    private boolean hasInteract(int tid, int uid, String type) {
-        String key = tid + ":" + uid;
-        if (template.opsForHash().hasKey(type, key))
-            return Boolean.parseBoolean(template.opsForHash().entries(type).get(key).toString());
-        return baseMapper.userInteractCount(tid, uid, type) > 0;
+    @Override
+    public String interact(Interact interact, boolean state) {
+        return interactService.submit(interact, state) ? null : "操作过于频繁，请稍后再试！";
     }
 
-    private final Map<String, Boolean> state = new HashMap<>();
-    ScheduledExecutorService service = Executors.newScheduledThreadPool(2);
-    private void saveInteractSchedule(String type) {
-        if(!state.getOrDefault(type, false)) {
-            state.put(type, true);
-            service.schedule(() -> {
-                this.saveInteract(type);
-                state.put(type, false);
-            }, 3, TimeUnit.SECONDS);
-        }
+    /**
+     * 批量将帖子转换为预览，作者信息与点赞收藏计数均一次性查询后在内存中组装，
+     * 避免每个帖子单独查询数据库
+     * @param topics 帖子列表
+     * @return 帖子预览列表
+     */
+    private List<TopicPreviewVO> resolveToPreview(List<Topic> topics) {
+        List<Topic> legacy = topics.stream().filter(topic -> topic.getPreviewText() == null).toList();
+        if(!legacy.isEmpty())
+            this.backfillPreview(legacy);
+        List<Integer> tids = topics.stream().map(Topic::getId).toList();
+        Set<Integer> uids = topics.stream().map(Topic::getUid).collect(Collectors.toSet());
+        Map<Integer, UserCard> cards = userCardService.findUserCards(uids);
+        Map<Integer, TopicStats> stats = statsService.findStats(tids);
+        return topics.stream().map(topic -> {
+            TopicPreviewVO vo = new TopicPreviewVO();
+            Optional.ofNullable(cards.get(topic.getUid()))
+                    .ifPresent(card -> CopyPlan.copyProperties(card, vo));
+            CopyPlan.copyProperties(topic, vo);
+            TopicStats topicStats = stats.getOrDefault(topic.getId(), new TopicStats(topic.getId()));
+            vo.setLike(topicStats.getLikes());
+            vo.setCollect(topicStats.getCollects());
+            vo.setText(topic.getPreviewText());
+            vo.setImages(JSONArray.parseArray(topic.getPreviewImages(), String.class));
+            return vo;
+        }).toList();
     }
 
-    private void saveInteract(String type) {
-        synchronized (type.intern()) {
-            List<Interact> check = new LinkedList<>();
-            List<Interact> uncheck = new LinkedList<>();
-            template.opsForHash().entries(type).forEach((k, v) -> {
-                if(Boolean.parseBoolean(v.toString()))
-                    check.add(Interact.parseInteract(k.toString(), type));
-                else
-                    uncheck.add(Interact.parseInteract(k.toString(), type));
-            });
-            if(!check.isEmpty())
-                baseMapper.addInteract(check, type);
-            if(!uncheck.isEmpty())
-                baseMapper.deleteInteract(uncheck, type);
-            template.delete(type);
-        }
+    /**
+     * 发帖与编辑时预先生成列表所需的预览文本和图片，列表查询无需再读取和解析完整内容
+     * @param topic 帖子
+     * @param content 帖子内容的分析结果
+     * @return 填充预览后的帖子
+     */
+    private Topic fillPreview(Topic topic, DeltaAnalyzer.Result content) {
+        topic.setPreviewText(content.preview());
+        topic.setPreviewImages(JSONArray.toJSONString(content.images()));
+        return topic;
     }
 
-    private <T> T fillUserDetailsByPrivacy(T target, int uid){
-        AccountDetails details = accountDetailsMapper.selectById(uid);
-        Account account = accountMapper.selectById(uid);
-        AccountPrivacy accountPrivacy = accountPrivacyMapper.selectById(uid);
-        String[] ignores = accountPrivacy.hiddenFields();
-        BeanUtils.copyProperties(account, target, ignores);
-        BeanUtils.copyProperties(details, target, ignores);
-        return target;
+    /**
+     * 为还没有预览字段的旧帖子补充生成预览并写回数据库，只在首次被列表读取时执行一次
+     * @param topics 缺少预览的帖子
+     */
+    private void backfillPreview(List<Topic> topics) {
+        Map<Integer, String> contents = baseMapper.selectList(Wrappers.<Topic>query()
+                        .select("id", "content")
+                        .in("id", topics.stream().map(Topic::getId).toList()))
+                .stream()
+                .collect(Collectors.toMap(Topic::getId, Topic::getContent));
+        topics.forEach(topic -> {
+            this.fillPreview(topic, DeltaAnalyzer.analyze(contents.get(topic.getId()), Integer.MAX_VALUE, PREVIEW_LENGTH));
+            baseMapper.update(null, Wrappers.<Topic>update()
+                    .eq("id", topic.getId())
+                    .set("preview_text", topic.getPreviewText())
+                    .set("preview_images", topic.getPreviewImages()));
+        });
     }
 
-    private TopicPreviewVO resolveToPreview(Topic topic) {
-        TopicPreviewVO vo = new TopicPreviewVO();
-        BeanUtils.copyProperties(accountMapper.selectById(topic.getUid()), vo);
-        BeanUtils.copyProperties(topic, vo);
-        vo.setLike(baseMapper.interactCount(topic.getId(), "like"));
-        vo.setCollect(baseMapper.interactCount(topic.getId(), "collect"));
-        List<String> images = new ArrayList<>();
-        StringBuilder previewText = new StringBuilder();
-        JSONArray ops = JSONObject.parseObject(topic.getContent()).getJSONArray("ops");
-        this.shortContent(ops, previewText, obj -> images.add(obj.toString()));
-        vo.setText(previewText.length() > 300 ? previewText.substring(0, 300) : previewText.toString());
-        vo.setImages(images);
-        return vo;
+    /**
+     * 为还没有保存引用摘要的旧评论补充摘要，同一页中被引用的评论一次性查询，生成后写回数据库
+     * @param comments 当前页的评论
+     * @return 被引用评论ID与摘要的映射
+     */
+    private Map<Integer, String> resolveLegacyQuotes(List<TopicComment> comments) {
+        Set<Integer> quotes = comments.stream()
+                .filter(comment -> comment.getQuote() > 0 && comment.getQuoteText() == null)
+                .map(TopicComment::getQuote)
+                .collect(Collectors.toSet());
+        if(quotes.isEmpty()) return Map.of();
+        Map<Integer, String> snippets = commentMapper.selectBatchIds(quotes)
+                .stream()
+                .collect(Collectors.toMap(TopicComment::getId, comment -> this.quoteSnippet(comment.getContent())));
+        quotes.forEach(quote -> commentMapper.update(null, Wrappers.<TopicComment>update()
+                .eq("quote", quote)
+                .isNull("quote_text")
+                .set("quote_text", snippets.computeIfAbsent(quote, ignore -> DELETED_QUOTE))));
+        return snippets;
     }
 
-    private void shortContent(JSONArray ops, StringBuilder previewText, Consumer<Object> imageHandler){
-        for (Object op : ops) {
-            Object insert = JSONObject.from(op).get("insert");
-            if(insert instanceof String text) {
-                if(previewText.length() >= 300) continue;
-                previewText.append(text);
-            } else if(insert instanceof Map<?, ?> map) {
-                Optional.ofNullable(map.get("image")).ifPresent(imageHandler);
-            }
-        }
+    private String quoteSnippet(String content) {
+        return DeltaAnalyzer.analyze(content, Integer.MAX_VALUE, PREVIEW_LENGTH).preview();
     }
 
-    private boolean textLimitCheck(JSONObject object, int max) {
-        if(object == null) return false;
-        long length = 0;
-        for (Object op : object.getJSONArray("ops")) {
-            length += JSONObject.from(op).getString("insert").length();
-            if(length > max) return false;
-        }
-        return true;
+    /**
+     * 帖子内容在请求中已经是JSON对象，序列化一次之后交给流式分析，同时得到需要保存的规范化内容
+     * @param content 帖子内容
+     * @param maxLength 最大文本长度
+     * @return 分析结果
+     */
+    private DeltaAnalyzer.Result analyzeContent(JSONObject content, int maxLength) {
+        return DeltaAnalyzer.analyze(content == null ? null : content.toJSONString(), maxLength, PREVIEW_LENGTH);
     }
+
+    private record PageCursor(Date time, int id) {}
 }
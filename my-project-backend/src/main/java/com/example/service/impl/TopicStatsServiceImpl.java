@@ -0,0 +1,339 @@
+package com.example.service.impl;
+
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.example.entity.dto.InteractCount;
+import com.example.entity.dto.Topic;
+import com.example.entity.dto.TopicStats;
+import com.example.mapper.TopicCommentMapper;
+import com.example.mapper.TopicMapper;
+import com.example.mapper.TopicStatsMapper;
+import com.example.service.TopicStatsService;
+import com.example.utils.Const;
+import jakarta.annotation.Resource;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 帖子计数服务，数据库中的计数表为准，Redis中的Hash作为读取镜像
+ * 计数变化时数据库与镜像都按变化量增减，不再重新统计明细表，完整统计只在校对任务中进行
+ * 每个镜像带有版本号，计数变化时版本号加一，加载镜像期间版本号变化时放弃回填，避免写回过时的计数
+ */
+@Service
+public class TopicStatsServiceImpl extends ServiceImpl<TopicStatsMapper, TopicStats> implements TopicStatsService {
+
+    @Resource
+    TopicMapper topicMapper;
+
+    @Resource
+    TopicCommentMapper commentMapper;
+
+    @Resource
+    StringRedisTemplate template;
+
+    //每轮校对任务处理的帖子数量
+    private static final int RECONCILE_BATCH = 500;
+    //校对锁的保存时间，同一时间只有一个节点执行校对，处理到的位置也保存在Redis中由各节点共享
+    private static final long RECONCILE_LOCK_EXPIRE = 60;
+    //重新统计期间计数被并发修改时最多重试的次数，仍然冲突的帖子留给之后的校对任务
+    private static final int RECOUNT_RETRY = 3;
+    //镜像的保存时间
+    private static final long MIRROR_EXPIRE = TimeUnit.HOURS.toSeconds(1);
+    //镜像版本号的保存时间，需要长于加载一次镜像的耗时
+    private static final long VERSION_EXPIRE = TimeUnit.HOURS.toSeconds(2);
+    private static final RedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+    //KEYS: 依次为镜像与版本号  ARGV: 保存时间, 之后每个镜像依次为加载前读到的版本号, 点赞, 收藏, 评论
+    //镜像已经存在或者加载期间版本号发生变化时不写入
+    private static final RedisScript<Long> SAVE_MIRROR_SCRIPT = new DefaultRedisScript<>("""
+            local n = 2
+            for i = 1, #KEYS, 2 do
+                if redis.call('exists', KEYS[i]) == 0 and (redis.call('get', KEYS[i + 1]) or '') == ARGV[n] then
+                    redis.call('hset', KEYS[i], 'like', ARGV[n + 1], 'collect', ARGV[n + 2], 'comment', ARGV[n + 3])
+                    redis.call('expire', KEYS[i], ARGV[1])
+                end
+                n = n + 4
+            end
+            return 1
+            """, Long.class);
+    //KEYS: 依次为镜像与版本号  ARGV: 计数字段, 版本号保存时间, 各个镜像的变化量
+    //只增减已经存在的镜像，不存在的镜像下次读取时从数据库加载
+    private static final RedisScript<Long> INCREASE_MIRROR_SCRIPT = new DefaultRedisScript<>("""
+            local n = 3
+            for i = 1, #KEYS, 2 do
+                redis.call('incr', KEYS[i + 1])
+                redis.call('expire', KEYS[i + 1], ARGV[2])
+                if redis.call('exists', KEYS[i]) == 1 then
+                    if redis.call('hincrby', KEYS[i], ARGV[1], ARGV[n]) < 0 then
+                        redis.call('hset', KEYS[i], ARGV[1], 0)
+                    end
+                end
+                n = n + 1
+            end
+            return 1
+            """, Long.class);
+    //KEYS: 依次为镜像与版本号  ARGV: 版本号保存时间
+    private static final RedisScript<Long> INVALIDATE_MIRROR_SCRIPT = new DefaultRedisScript<>("""
+            for i = 1, #KEYS, 2 do
+                redis.call('incr', KEYS[i + 1])
+                redis.call('expire', KEYS[i + 1], ARGV[1])
+                redis.call('del', KEYS[i])
+            end
+            return 1
+            """, Long.class);
+
+    @Override
+    public TopicStats findStats(int tid) {
+        return this.findStats(List.of(tid)).get(tid);
+    }
+
+    /**
+     * 批量读取帖子计数，优先使用Redis镜像，未命中的部分从计数表加载后回填，
+     * 读取镜像时同时读取版本号，回填时版本号已经变化说明加载期间计数有更新，放弃回填
+     * @param tids 帖子ID列表
+     * @return 帖子ID与计数的映射
+     */
+    @Override
+    public Map<Integer, TopicStats> findStats(Collection<Integer> tids) {
+        List<Integer> ids = List.copyOf(new LinkedHashSet<>(tids));
+        if(ids.isEmpty()) return Map.of();
+        List<Object> hashes = template.executePipelined((RedisCallback<Object>) connection -> {
+            ids.forEach(tid -> {
+                connection.hashCommands().hGetAll(this.statsKey(tid).getBytes(StandardCharsets.UTF_8));
+                connection.stringCommands().get(this.versionKey(tid).getBytes(StandardCharsets.UTF_8));
+            });
+            return null;
+        });
+        Map<Integer, TopicStats> result = new HashMap<>();
+        Map<Integer, String> missing = new LinkedHashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            if(hashes.get(2 * i) instanceof Map<?, ?> hash && hash.size() == 3)
+                result.put(ids.get(i), TopicStats.parseHash(ids.get(i), hash));
+            else
+                missing.put(ids.get(i), Objects.toString(hashes.get(2 * i + 1), ""));
+        }
+        if(!missing.isEmpty()) {
+            Map<Integer, TopicStats> loaded = this.loadStats(List.copyOf(missing.keySet()));
+            this.saveMirror(loaded.values(), missing);
+            result.putAll(loaded);
+        }
+        return result;
+    }
+
+    /**
+     * 点赞或收藏写入数据库之后，按实际变化量增减计数，计数行不存在的帖子直接从明细表统计
+     * @param deltas 帖子ID与数量变化的映射
+     * @param type 互动类型
+     */
+    @Override
+    public void increaseInteractCount(Map<Integer, Integer> deltas, String type) {
+        this.increaseCount(deltas, TopicStats.interactColumn(type), type);
+    }
+
+    @Override
+    public void increaseCommentCount(int tid, int delta) {
+        this.increaseCount(Map.of(tid, delta), "comments", "comment");
+    }
+
+    /**
+     * 从明细表重新统计指定帖子的计数并让镜像失效，用于增量更新失败、计数可能已经偏差的帖子
+     * @param tids 帖子ID列表
+     */
+    @Override
+    public void recountStats(Collection<Integer> tids) {
+        List<Integer> ids = List.copyOf(new LinkedHashSet<>(tids));
+        if(ids.isEmpty()) return;
+        this.correctStats(ids);
+        this.invalidateMirror(ids);
+    }
+
+    /**
+     * 定时校对计数表，每轮按ID顺序处理一批帖子，从明细表重新统计，修正增量维护中可能出现的偏差
+     * 各节点通过锁保证同一时间只有一个节点校对，处理到的帖子ID保存在Redis中，所有节点接着同一位置继续
+     */
+    @Override
+    @Scheduled(initialDelay = 60, fixedDelay = 60, timeUnit = TimeUnit.SECONDS)
+    public void reconcileStats() {
+        String token = UUID.randomUUID().toString();
+        if(!Boolean.TRUE.equals(template.opsForValue()
+                .setIfAbsent(Const.FORUM_TOPIC_STATS_RECONCILE_LOCK, token, RECONCILE_LOCK_EXPIRE, TimeUnit.SECONDS)))
+            return;
+        try {
+            String cursor = template.opsForValue().get(Const.FORUM_TOPIC_STATS_RECONCILE_CURSOR);
+            List<Integer> tids = topicMapper.selectList(Wrappers.<Topic>query()
+                            .select("id")
+                            .gt("id", cursor == null ? 0 : Integer.parseInt(cursor))
+                            .orderByAsc("id")
+                            .last("limit " + RECONCILE_BATCH))
+                    .stream()
+                    .map(Topic::getId)
+                    .toList();
+            if(tids.isEmpty()) {
+                template.delete(Const.FORUM_TOPIC_STATS_RECONCILE_CURSOR);
+                return;
+            }
+            Set<Integer> corrected = this.correctStats(tids);
+            if(!corrected.isEmpty())
+                this.invalidateMirror(corrected);
+            template.opsForValue().set(Const.FORUM_TOPIC_STATS_RECONCILE_CURSOR, String.valueOf(tids.get(tids.size() - 1)));
+        } finally {
+            template.execute(UNLOCK_SCRIPT, List.of(Const.FORUM_TOPIC_STATS_RECONCILE_LOCK), token);
+        }
+    }
+
+    /**
+     * 从明细表重新统计并修正计数行，写入时以统计前读到的计数为条件，统计期间计数被增量更新过的行不会被覆盖，
+     * 这些行重新读取并统计后再次尝试，多次冲突的留给之后的校对任务
+     * 计数行不存在的帖子跳过，这些帖子在读取或者计数变化时会完整统计
+     * @param tids 帖子ID列表
+     * @return 计数被修正的帖子ID
+     */
+    private Set<Integer> correctStats(List<Integer> tids) {
+        Set<Integer> corrected = new HashSet<>();
+        List<Integer> pending = tids;
+        for (int i = 0; i < RECOUNT_RETRY && !pending.isEmpty(); i++) {
+            Map<Integer, TopicStats> before = this.listByIds(pending)
+                    .stream()
+                    .collect(Collectors.toMap(TopicStats::getTid, Function.identity()));
+            if(before.isEmpty()) break;
+            List<Integer> conflicted = new ArrayList<>();
+            for (TopicStats counted : this.countStats(List.copyOf(before.keySet()))) {
+                TopicStats expect = before.get(counted.getTid());
+                if(expect.equals(counted)) continue;
+                if(baseMapper.compareAndSaveStats(expect, counted) > 0)
+                    corrected.add(counted.getTid());
+                else
+                    conflicted.add(counted.getTid());
+            }
+            pending = conflicted;
+        }
+        return corrected;
+    }
+
+    /**
+     * 按变化量增减数据库中的计数与已经存在的镜像
+     * @param deltas 帖子ID与数量变化的映射
+     * @param column 数据库计数列
+     * @param field 镜像中的计数字段
+     */
+    private void increaseCount(Map<Integer, Integer> deltas, String column, String field) {
+        List<Integer> ids = deltas.entrySet()
+                .stream()
+                .filter(entry -> entry.getValue() != 0)
+                .map(Map.Entry::getKey)
+                .toList();
+        if(ids.isEmpty()) return;
+        //新建的计数行已经包含本次变化，只需要让镜像失效
+        Set<Integer> initialized = this.initMissingStats(ids);
+        Map<Integer, Integer> changes = new LinkedHashMap<>();
+        ids.stream()
+                .filter(tid -> !initialized.contains(tid))
+                .forEach(tid -> {
+                    baseMapper.increaseCount(tid, column, deltas.get(tid));
+                    changes.put(tid, deltas.get(tid));
+                });
+        if(!initialized.isEmpty())
+            this.invalidateMirror(initialized);
+        if(changes.isEmpty()) return;
+        List<String> keys = new ArrayList<>();
+        List<Object> args = new ArrayList<>(List.of(field, String.valueOf(VERSION_EXPIRE)));
+        changes.forEach((tid, delta) -> {
+            keys.add(this.statsKey(tid));
+            keys.add(this.versionKey(tid));
+            args.add(String.valueOf(delta));
+        });
+        template.execute(INCREASE_MIRROR_SCRIPT, keys, args.toArray());
+    }
+
+    private Map<Integer, TopicStats> loadStats(List<Integer> tids) {
+        Map<Integer, TopicStats> stats = this.listByIds(tids)
+                .stream()
+                .collect(Collectors.toMap(TopicStats::getTid, Function.identity()));
+        List<Integer> absent = tids.stream().filter(tid -> !stats.containsKey(tid)).toList();
+        if(!absent.isEmpty()) {
+            List<TopicStats> counted = this.countStats(absent);
+            baseMapper.saveStats(counted);
+            counted.forEach(s -> stats.put(s.getTid(), s));
+        }
+        return stats;
+    }
+
+    /**
+     * 确保帖子的计数行已经存在，不存在时直接从明细表统计完整数据
+     * @param tids 帖子ID列表
+     * @return 本次新统计的帖子ID，这些帖子无需再进行增量更新
+     */
+    private Set<Integer> initMissingStats(List<Integer> tids) {
+        Set<Integer> exists = this.listByIds(tids)
+                .stream()
+                .map(TopicStats::getTid)
+                .collect(Collectors.toSet());
+        List<Integer> absent = tids.stream().filter(tid -> !exists.contains(tid)).toList();
+        if(!absent.isEmpty())
+            baseMapper.saveStats(this.countStats(absent));
+        return new HashSet<>(absent);
+    }
+
+    private List<TopicStats> countStats(List<Integer> tids) {
+        Map<Integer, Integer> likes = this.countMap(topicMapper.interactCountBatch(tids, "like"));
+        Map<Integer, Integer> collects = this.countMap(topicMapper.interactCountBatch(tids, "collect"));
+        Map<Integer, Integer> comments = this.countMap(commentMapper.commentCountBatch(tids));
+        return tids.stream()
+                .map(tid -> new TopicStats(tid,
+                        likes.getOrDefault(tid, 0),
+                        collects.getOrDefault(tid, 0),
+                        comments.getOrDefault(tid, 0)))
+                .toList();
+    }
+
+    private Map<Integer, Integer> countMap(List<InteractCount> counts) {
+        return counts.stream().collect(Collectors.toMap(InteractCount::getTid, InteractCount::getCount));
+    }
+
+    /**
+     * 回填镜像，只写入仍然不存在并且版本号与加载前相同的镜像
+     * @param stats 从数据库加载的计数
+     * @param versions 加载前读到的版本号
+     */
+    private void saveMirror(Collection<TopicStats> stats, Map<Integer, String> versions) {
+        if(stats.isEmpty()) return;
+        List<String> keys = new ArrayList<>();
+        List<Object> args = new ArrayList<>(List.of(String.valueOf(MIRROR_EXPIRE)));
+        stats.forEach(s -> {
+            keys.add(this.statsKey(s.getTid()));
+            keys.add(this.versionKey(s.getTid()));
+            Map<String, String> hash = s.toHash();
+            args.addAll(List.of(versions.getOrDefault(s.getTid(), ""),
+                    hash.get("like"), hash.get("collect"), hash.get("comment")));
+        });
+        template.execute(SAVE_MIRROR_SCRIPT, keys, args.toArray());
+    }
+
+    private void invalidateMirror(Collection<Integer> tids) {
+        List<String> keys = new ArrayList<>();
+        tids.forEach(tid -> {
+            keys.add(this.statsKey(tid));
+            keys.add(this.versionKey(tid));
+        });
+        template.execute(INVALIDATE_MIRROR_SCRIPT, keys, String.valueOf(VERSION_EXPIRE));
+    }
+
+    private String statsKey(int tid) {
+        return Const.FORUM_TOPIC_STATS_CACHE + tid;
+    }
+
+    private String versionKey(int tid) {
+        return Const.FORUM_TOPIC_STATS_VERSION + tid;
+    }
+}
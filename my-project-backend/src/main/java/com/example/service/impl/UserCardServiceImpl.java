@@ -0,0 +1,181 @@
+package com.example.service.impl;
+
+import com.alibaba.fastjson2.JSONObject;
+import com.example.entity.dto.AccountDetails;
+import com.example.entity.dto.AccountPrivacy;
+import com.example.entity.dto.UserCard;
+import com.example.mapper.AccountDetailsMapper;
+import com.example.mapper.AccountMapper;
+import com.example.mapper.AccountPrivacyMapper;
+import com.example.service.UserCardService;
+import com.example.utils.Const;
+import com.example.utils.CopyPlan;
+import jakarta.annotation.Resource;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 用户公开信息缓存，保存的是已经按隐私设置过滤之后的结果，
+ * 帖子详情与评论列表展示作者信息时直接批量读取，无需再分别查询账号、详细信息与隐私设置
+ * 每个用户的缓存带有版本号，修改资料时版本号加一，加载期间版本号变化时放弃回填，
+ * 避免把修改提交之前读到的旧数据写回缓存
+ */
+@Service
+public class UserCardServiceImpl implements UserCardService {
+
+    @Resource
+    AccountMapper accountMapper;
+
+    @Resource
+    AccountDetailsMapper detailsMapper;
+
+    @Resource
+    AccountPrivacyMapper privacyMapper;
+
+    @Resource
+    StringRedisTemplate template;
+
+    //用户信息缓存时间，修改资料时会主动清除
+    private static final long CARD_EXPIRE = 3600;
+    //版本号的保存时间，需要长于加载一次用户信息的耗时
+    private static final long VERSION_EXPIRE = TimeUnit.HOURS.toSeconds(2);
+    //KEYS: 依次为缓存与版本号  ARGV: 缓存时间, 之后每个用户依次为加载前读到的版本号与缓存内容
+    //缓存已经存在或者加载期间版本号发生变化时不写入
+    private static final RedisScript<Long> SAVE_SCRIPT = new DefaultRedisScript<>("""
+            local n = 2
+            for i = 1, #KEYS, 2 do
+                if (redis.call('get', KEYS[i + 1]) or '') == ARGV[n] then
+                    redis.call('set', KEYS[i], ARGV[n + 1], 'EX', ARGV[1], 'NX')
+                end
+                n = n + 2
+            end
+            return 1
+            """, Long.class);
+    //KEYS: 缓存, 版本号  ARGV: 版本号保存时间
+    private static final RedisScript<Long> INVALIDATE_SCRIPT = new DefaultRedisScript<>("""
+            redis.call('incr', KEYS[2])
+            redis.call('expire', KEYS[2], ARGV[1])
+            redis.call('del', KEYS[1])
+            return 1
+            """, Long.class);
+
+    @Override
+    public UserCard findUserCard(int uid) {
+        return this.findUserCards(List.of(uid)).get(uid);
+    }
+
+    /**
+     * 批量读取用户公开信息，先一次性读取Redis，未命中的用户统一查询数据库后回填，
+     * 读取缓存时同时读取版本号，回填时版本号已经变化说明加载期间资料有修改，放弃回填
+     * @param uids 用户ID列表
+     * @return 用户ID与公开信息的映射，不存在的用户不包含在内
+     */
+    @Override
+    public Map<Integer, UserCard> findUserCards(Collection<Integer> uids) {
+        List<Integer> ids = List.copyOf(new LinkedHashSet<>(uids));
+        if(ids.isEmpty()) return Map.of();
+        List<Object> values = template.executePipelined((RedisCallback<Object>) connection -> {
+            ids.forEach(uid -> {
+                connection.stringCommands().get(this.cardKey(uid).getBytes(StandardCharsets.UTF_8));
+                connection.stringCommands().get(this.versionKey(uid).getBytes(StandardCharsets.UTF_8));
+            });
+            return null;
+        });
+        Map<Integer, UserCard> result = new HashMap<>();
+        Map<Integer, String> missing = new LinkedHashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            Object value = values.get(2 * i);
+            if(value != null)
+                result.put(ids.get(i), JSONObject.parseObject(value.toString(), UserCard.class));
+            else
+                missing.put(ids.get(i), Objects.toString(values.get(2 * i + 1), ""));
+        }
+        if(!missing.isEmpty()) {
+            Map<Integer, UserCard> loaded = this.loadCards(List.copyOf(missing.keySet()));
+            this.saveCards(loaded.values(), missing);
+            result.putAll(loaded);
+        }
+        return result;
+    }
+
+    /**
+     * 清除用户信息缓存并增加版本号，处于事务中时等到事务提交之后再清除，
+     * 提交之前已经开始加载的请求会因为版本号变化放弃回填，不会把旧数据重新写回缓存
+     * @param uid 用户ID
+     */
+    @Override
+    public void deleteUserCard(int uid) {
+        if(TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidateCard(uid);
+                }
+            });
+        } else {
+            this.invalidateCard(uid);
+        }
+    }
+
+    private Map<Integer, UserCard> loadCards(List<Integer> uids) {
+        Map<Integer, AccountDetails> details = detailsMapper.selectBatchIds(uids)
+                .stream()
+                .collect(Collectors.toMap(AccountDetails::getId, Function.identity()));
+        Map<Integer, AccountPrivacy> privacies = privacyMapper.selectBatchIds(uids)
+                .stream()
+                .collect(Collectors.toMap(AccountPrivacy::getId, Function.identity()));
+        Map<Integer, UserCard> cards = new HashMap<>();
+        accountMapper.selectBatchIds(uids).forEach(account -> {
+            UserCard card = new UserCard();
+            List<String> ignores = Optional.ofNullable(privacies.get(account.getId()))
+                    .map(AccountPrivacy::hiddenFields)
+                    .orElse(List.of());
+            CopyPlan.copyProperties(account, card, ignores);
+            Optional.ofNullable(details.get(account.getId()))
+                    .ifPresent(detail -> CopyPlan.copyProperties(detail, card, ignores));
+            cards.put(account.getId(), card);
+        });
+        return cards;
+    }
+
+    /**
+     * 回填缓存，只写入仍然不存在并且版本号与加载前相同的用户信息
+     * @param cards 从数据库加载的用户信息
+     * @param versions 加载前读到的版本号
+     */
+    private void saveCards(Collection<UserCard> cards, Map<Integer, String> versions) {
+        if(cards.isEmpty()) return;
+        List<String> keys = new ArrayList<>();
+        List<Object> args = new ArrayList<>(List.of(String.valueOf(CARD_EXPIRE)));
+        cards.forEach(card -> {
+            keys.add(this.cardKey(card.getId()));
+            keys.add(this.versionKey(card.getId()));
+            args.add(versions.getOrDefault(card.getId(), ""));
+            args.add(JSONObject.toJSONString(card));
+        });
+        template.execute(SAVE_SCRIPT, keys, args.toArray());
+    }
+
+    private void invalidateCard(int uid) {
+        template.execute(INVALIDATE_SCRIPT, List.of(this.cardKey(uid), this.versionKey(uid)), String.valueOf(VERSION_EXPIRE));
+    }
+
+    private String cardKey(int uid) {
+        return Const.USER_CARD_CACHE + uid;
+    }
+
+    private String versionKey(int uid) {
+        return Const.USER_CARD_VERSION + uid;
+    }
+}
@@ -4,17 +4,16 @@ import com.alibaba.fastjson2.JSONArray;
 import com.alibaba.fastjson2.JSONObject;
 import com.example.entity.vo.response.WeatherVO;
 import com.example.service.WeatherService;
+import com.example.utils.CacheUtils;
 import com.example.utils.Const;
 import jakarta.annotation.Resource;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.concurrent.TimeUnit;
 import java.util.zip.GZIPInputStream;
 
 @Service
@@ -24,7 +23,7 @@ public class WeatherServiceImpl implements WeatherService {
     RestTemplate rest;
 
     @Resource
-    StringRedisTemplate template;
+    CacheUtils cacheUtils;
 
     @Value("${spring.weather.key}")
     String key;
@@ -40,13 +39,7 @@ public class WeatherServiceImpl implements WeatherService {
         JSONObject location = geo.getJSONArray("location").getJSONObject(0);
         int id = location.getInteger("id");
         String key = Const.FORUM_WEATHER_CACHE +id;
-        String cache = template.opsForValue().get(key);
-        if(cache != null)
-            return JSONObject.parseObject(cache).to(WeatherVO.class);
-        WeatherVO vo = this.fetchFromAPI(id, location);
-        if(vo == null) return null;
-        template.opsForValue().set(key, JSONObject.from(vo).toJSONString(), 1, TimeUnit.HOURS);
-        return vo;
+        return cacheUtils.takeFromCache(key, WeatherVO.class, 3600, () -> this.fetchFromAPI(id, location));
     }
 
     private WeatherVO fetchFromAPI(int id, JSONObject location){
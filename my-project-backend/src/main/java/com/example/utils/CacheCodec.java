@@ -0,0 +1,51 @@
+package com.example.utils;
+
+import com.alibaba.fastjson2.JSONArray;
+import com.alibaba.fastjson2.JSONObject;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 缓存内容编码方式
+ * JSON为普通文本格式，便于直接在Redis中查看，JSONB为FastJSON2的二进制格式，体积更小、解析更快
+ */
+public enum CacheCodec {
+    JSON {
+        @Override
+        public byte[] encode(Object data) {
+            return com.alibaba.fastjson2.JSON.toJSONBytes(data);
+        }
+
+        @Override
+        public JSONObject decodeObject(byte[] bytes) {
+            return JSONObject.parseObject(new String(bytes, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public JSONArray decodeArray(byte[] bytes) {
+            return JSONArray.parseArray(new String(bytes, StandardCharsets.UTF_8));
+        }
+    },
+    JSONB {
+        @Override
+        public byte[] encode(Object data) {
+            return com.alibaba.fastjson2.JSONB.toBytes(data);
+        }
+
+        @Override
+        public JSONObject decodeObject(byte[] bytes) {
+            return com.alibaba.fastjson2.JSONB.parseObject(bytes);
+        }
+
+        @Override
+        public JSONArray decodeArray(byte[] bytes) {
+            return com.alibaba.fastjson2.JSONB.parseArray(bytes);
+        }
+    };
+
+    public abstract byte[] encode(Object data);
+
+    public abstract JSONObject decodeObject(byte[] bytes);
+
+    public abstract JSONArray decodeArray(byte[] bytes);
+}
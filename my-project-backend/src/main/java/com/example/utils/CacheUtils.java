@@ -1,48 +1,561 @@
 package com.example.utils;
 
-import com.alibaba.fastjson2.JSONArray;
 import com.alibaba.fastjson2.JSONObject;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.stereotype.Component;
 
-import java.util.Collections;
-import java.util.List;
-import java.util.Optional;
-import java.util.Set;
-import java.util.concurrent.TimeUnit;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
+/**
+ * 缓存通用工具
+ * Redis作为各节点共享的二级缓存，可选开启进程内一级缓存，直接保存反序列化后的对象，
+ * 删除缓存时通过Redis发布订阅通知所有节点清除各自的一级缓存
+ * 成批失效的缓存使用带版本号的命名空间，失效时只需自增版本号，旧版本的缓存自然过期
+ * 缓存未命中时同一个键在每个节点只会有一个加载任务，其他请求等待同一个结果，避免缓存击穿
+ * 带加载函数的缓存过期后先返回旧数据并在后台刷新，避免过期瞬间的延迟尖峰
+ * 缓存内容按配置的编码方式以字节形式存入Redis，超过一定大小时进行压缩
+ */
+@Slf4j
 @Component
 public class CacheUtils {
     @Resource
     StringRedisTemplate template;
 
+    @Resource
+    RedisTemplate<String, byte[]> byteRedisTemplate;
+
+    @Resource
+    RedisMessageListenerContainer container;
+
+    //是否开启进程内一级缓存
+    @Value("${spring.web.cache.local.enabled}")
+    boolean localEnabled;
+    //缓存内容编码方式
+    @Value("${spring.web.cache.codec}")
+    CacheCodec codec;
+    //缓存内容超过此字节数时进行GZIP压缩
+    @Value("${spring.web.cache.compress-threshold}")
+    int compressThreshold;
+    //一级缓存容量上限，按缓存内容编码后的字节数计算
+    @Value("${spring.web.cache.local.max-size}")
+    long localMaxSize;
+    //一级缓存条目最长存活时间，秒为单位
+    @Value("${spring.web.cache.local.max-ttl}")
+    long localMaxTtl;
+    //是否额外使用Redis锁，让多个节点对同一个键也只加载一次
+    @Value("${spring.web.cache.load-lock}")
+    boolean loadLock;
+
+    //命名空间版本号在本地的缓存时间，发布订阅消息丢失时最多延迟这么久生效
+    private static final long VERSION_CACHE_MILLIS = 5000;
+    //加载锁的最长持有时间，超时后其他节点不再等待而是自行加载
+    private static final long LOAD_LOCK_MILLIS = 3000;
+    //XFetch提前刷新系数，越大越倾向于提前刷新
+    private static final double XFETCH_BETA = 1.0;
+    //缓存内容首字节标记是否经过压缩
+    private static final byte FLAG_PLAIN = 0;
+    private static final byte FLAG_GZIP = 1;
+    private static final RedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    private Cache<String, LocalEntry> local;
+    private final Map<String, NamespaceVersion> versions = new ConcurrentHashMap<>();
+    //每收到一次删除通知加一，用于丢弃删除前从Redis读到的旧数据
+    private final AtomicLong invalidations = new AtomicLong();
+    private final Map<String, CacheCounter> counters = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Object>> loading = new ConcurrentHashMap<>();
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+    private final ExecutorService refresher = new ThreadPoolExecutor(2, 2, 0, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(256), new ThreadPoolExecutor.AbortPolicy());
+
+    @PostConstruct
+    private void initLocalCache() {
+        container.addMessageListener((message, pattern) ->
+                versions.remove(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(Const.CACHE_NAMESPACE_CHANNEL));
+        if(!localEnabled) return;
+        local = Caffeine.newBuilder()
+                .maximumWeight(localMaxSize)
+                .weigher((String key, LocalEntry entry) -> entry.weight())
+                .expireAfter(new LocalExpiry())
+                .build();
+        container.addMessageListener((message, pattern) ->
+                this.invalidateLocal(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(Const.CACHE_INVALIDATE_CHANNEL));
+    }
+
+    @PreDestroy
+    private void shutdownRefresher() {
+        refresher.shutdown();
+    }
+
+    /**
+     * 生成命名空间下的缓存键，键中带有命名空间当前的版本号
+     * @param namespace 命名空间，如 topic:preview:
+     * @param key 命名空间内的键
+     * @return 完整的缓存键
+     */
+    public String namespaceKey(String namespace, String key) {
+        long now = System.currentTimeMillis();
+        NamespaceVersion version = versions.get(namespace);
+        if(version == null || version.expireAt() < now) {
+            String value = template.opsForValue().get(Const.CACHE_VERSION + namespace);
+            version = new NamespaceVersion(value == null ? 0 : Long.parseLong(value), now + VERSION_CACHE_MILLIS);
+            versions.put(namespace, version);
+        }
+        return namespace + "v" + version.version() + ":" + key;
+    }
+
+    /**
+     * 使整个命名空间下的缓存失效，只需一次INCR，无需遍历和删除旧的缓存键
+     * @param namespace 命名空间
+     */
+    public void invalidateNamespace(String namespace) {
+        Long version = template.opsForValue().increment(Const.CACHE_VERSION + namespace);
+        if(version != null)
+            versions.put(namespace, new NamespaceVersion(version, System.currentTimeMillis() + VERSION_CACHE_MILLIS));
+        template.convertAndSend(Const.CACHE_NAMESPACE_CHANNEL, namespace);
+    }
+
+    /**
+     * 读取缓存对象，开启一级缓存时返回的对象会被多个请求共享，调用方不应修改
+     * @param key 键
+     * @param dataType 对象类型
+     * @return 缓存对象，不存在时为null
+     * @param <T> 对象类型
+     */
     public <T> T takeFromCache(String key, Class<T> dataType) {
-        String s = template.opsForValue().get(key);
-        if(s == null) return null;
-        return JSONObject.parseObject(s).to(dataType);
+        return this.take(key, bytes -> codec.decodeObject(bytes).to(dataType));
     }
 
+    /**
+     * 读取缓存列表，返回的列表不可修改
+     * @param key 键
+     * @param itemType 列表元素类型
+     * @return 缓存列表，不存在时为null
+     * @param <T> 列表元素类型
+     */
     public <T> List<T> takeListFromCache(String key, Class<T> itemType) {
-        String s = template.opsForValue().get(key);
-        if(s == null) return null;
-        return JSONArray.parseArray(s).toList(itemType);
+        return this.take(key, bytes -> Collections.unmodifiableList(codec.decodeArray(bytes).toList(itemType)));
+    }
+
+    /**
+     * 读取缓存对象，未命中时使用加载函数获取数据并写入缓存，
+     * 同一时间同一个键只有一个请求执行加载，其余请求等待并共享加载结果
+     * 缓存到达逻辑过期时间后仍会继续返回旧数据，同时在后台刷新，临近过期时也会按概率提前刷新，
+     * 此方法写入的缓存带有过期信息，不能与不带加载函数的读写方法混用同一个键
+     * @param key 键
+     * @param dataType 对象类型
+     * @param expire 过期时间，秒为单位
+     * @param loader 加载函数，返回null时不写入缓存
+     * @return 缓存或加载得到的对象
+     * @param <T> 对象类型
+     */
+    public <T> T takeFromCache(String key, Class<T> dataType, long expire, Supplier<T> loader) {
+        return this.takeWithRefresh(key, expire, loader, object -> object.getObject("value", dataType));
+    }
+
+    /**
+     * 读取缓存列表，未命中时使用加载函数获取数据并写入缓存，加载与刷新过程与单个对象相同
+     * @param key 键
+     * @param itemType 列表元素类型
+     * @param expire 过期时间，秒为单位
+     * @param loader 加载函数，返回null时不写入缓存
+     * @return 缓存或加载得到的列表
+     * @param <T> 列表元素类型
+     */
+    public <T> List<T> takeListFromCache(String key, Class<T> itemType, long expire, Supplier<List<T>> loader) {
+        return this.takeWithRefresh(key, expire, loader,
+                object -> Collections.unmodifiableList(object.getJSONArray("value").toList(itemType)));
     }
 
     public <T> void saveToCache(String key, T data, long expire) {
-        template.opsForValue().set(key, JSONObject.from(data).toJSONString(), expire, TimeUnit.SECONDS);
+        this.save(key, data, codec.encode(data), expire);
     }
 
     public <T> void saveListToCache(String key, List<T> list, long expire) {
-        template.opsForValue().set(key, JSONArray.from(list).toJSONString(), expire, TimeUnit.SECONDS);
+        this.save(key, Collections.unmodifiableList(list), codec.encode(list), expire);
     }
 
-    public void deleteCachePattern(String key){
-        Set<String> keys = Optional.ofNullable(template.keys(key)).orElse(Collections.emptySet());
-        template.delete(keys);
+    /**
+     * 按通配符删除缓存，使用SCAN分批遍历，不会像KEYS那样长时间阻塞Redis，
+     * 仅用于管理员清理等低频场景，业务中的批量失效请使用命名空间
+     * @param key 通配符表达式
+     * @return 删除的键数量
+     */
+    public long deleteCachePattern(String key){
+        ScanOptions options = ScanOptions.scanOptions().match(key).count(1000).build();
+        long deleted = Optional.ofNullable(template.execute((RedisCallback<Long>) connection -> {
+            long count = 0;
+            List<byte[]> batch = new ArrayList<>();
+            try (Cursor<byte[]> cursor = connection.keyCommands().scan(options)) {
+                while (cursor.hasNext()) {
+                    batch.add(cursor.next());
+                    if(batch.size() >= 500) {
+                        count += Optional.ofNullable(connection.keyCommands().del(batch.toArray(byte[][]::new))).orElse(0L);
+                        batch.clear();
+                    }
+                }
+            }
+            if(!batch.isEmpty())
+                count += Optional.ofNullable(connection.keyCommands().del(batch.toArray(byte[][]::new))).orElse(0L);
+            return count;
+        })).orElse(0L);
+        this.publishInvalidate(key);
+        return deleted;
     }
 
     public void deleteCache(String key){
         template.delete(key);
+        this.publishInvalidate(key);
+    }
+
+    public void deleteCache(Collection<String> keys){
+        template.delete(keys);
+        keys.forEach(this::publishInvalidate);
+    }
+
+    /**
+     * 按键前缀统计的缓存命中情况，local为一级缓存命中，redis为二级缓存命中，miss为未命中
+     * @return 统计数据
+     */
+    public Map<String, Map<String, Long>> statistics() {
+        return counters.entrySet()
+                .stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().snapshot()));
+    }
+
+    private <T> T takeWithRefresh(String key, long expire, Supplier<T> loader, Function<JSONObject, T> valueParser) {
+        Function<byte[], CacheEnvelope<T>> parser = bytes -> {
+            JSONObject object = codec.decodeObject(bytes);
+            return new CacheEnvelope<>(valueParser.apply(object), object.getLongValue("expireAt"), object.getLongValue("delta"));
+        };
+        CacheEnvelope<T> envelope = this.take(key, parser);
+        if(envelope != null && envelope.value() != null) {
+            if(this.shouldRefresh(envelope))
+                this.refreshAsync(key, expire, loader);
+            return envelope.value();
+        }
+        envelope = this.singleFlight(key,
+                () -> this.take(key, parser),
+                () -> this.compute(loader, expire),
+                computed -> this.saveEnvelope(key, computed, expire));
+        return envelope == null ? null : envelope.value();
+    }
+
+    /**
+     * XFetch概率提前刷新，越接近逻辑过期时间、加载耗时越长，提前刷新的概率越大，
+     * 使不同键的刷新时间自然分散，已经逻辑过期的缓存总是需要刷新
+     * @param envelope 缓存数据
+     * @return 是否需要刷新
+     */
+    private boolean shouldRefresh(CacheEnvelope<?> envelope) {
+        long now = System.currentTimeMillis();
+        if(now >= envelope.expireAt()) return true;
+        double random = 1 - ThreadLocalRandom.current().nextDouble();
+        return now - envelope.delta() * XFETCH_BETA * Math.log(random) >= envelope.expireAt();
+    }
+
+    /**
+     * 在后台刷新缓存，调用方直接使用当前的旧数据，同一个键同一时间只会有一个刷新任务，
+     * 开启加载锁时其他节点正在刷新的键会被跳过
+     */
+    private <T> void refreshAsync(String key, long expire, Supplier<T> loader) {
+        if(!refreshing.add(key)) return;
+        try {
+            refresher.execute(() -> {
+                String lockKey = Const.CACHE_LOAD_LOCK + key;
+                String token = UUID.randomUUID().toString();
+                try {
+                    if(loadLock && !Boolean.TRUE.equals(template.opsForValue()
+                            .setIfAbsent(lockKey, token, LOAD_LOCK_MILLIS, TimeUnit.MILLISECONDS)))
+                        return;
+                    CacheEnvelope<T> envelope = this.compute(loader, expire);
+                    if(envelope != null)
+                        this.saveEnvelope(key, envelope, expire);
+                } catch (Exception exception) {
+                    log.warn("后台刷新缓存 {} 时出现问题: {}", key, exception.getMessage());
+                } finally {
+                    if(loadLock)
+                        template.execute(UNLOCK_SCRIPT, List.of(lockKey), token);
+                    refreshing.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException exception) {
+            refreshing.remove(key);
+        }
+    }
+
+    private <T> CacheEnvelope<T> compute(Supplier<T> loader, long expire) {
+        long start = System.currentTimeMillis();
+        T value = loader.get();
+        if(value == null) return null;
+        long now = System.currentTimeMillis();
+        return new CacheEnvelope<>(value, now + TimeUnit.SECONDS.toMillis(expire), Math.max(now - start, 1));
+    }
+
+    /**
+     * 写入带有逻辑过期时间与加载耗时的缓存，Redis中的实际过期时间额外保留一个周期用于返回旧数据
+     */
+    private void saveEnvelope(String key, CacheEnvelope<?> envelope, long expire) {
+        JSONObject object = new JSONObject();
+        object.put("value", envelope.value());
+        object.put("expireAt", envelope.expireAt());
+        object.put("delta", envelope.delta());
+        this.save(key, envelope, codec.encode(object), expire * 2);
+    }
+
+    /**
+     * 合并同一个键的并发加载，当前节点第一个未命中的请求负责加载，其余请求等待它的结果
+     * @param key 键
+     * @param cached 读取缓存
+     * @param loader 加载数据
+     * @param saver 写入缓存
+     * @return 数据
+     * @param <T> 数据类型
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T singleFlight(String key, Supplier<T> cached, Supplier<T> loader, Consumer<T> saver) {
+        T value = cached.get();
+        if(value != null) return value;
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> running = loading.putIfAbsent(key, future);
+        if(running != null) {
+            try {
+                return (T) running.join();
+            } catch (CompletionException exception) {
+                if(exception.getCause() instanceof RuntimeException cause) throw cause;
+                throw exception;
+            }
+        }
+        try {
+            value = cached.get();
+            if(value == null)
+                value = loadLock ? this.loadWithLock(key, cached, loader, saver) : this.loadAndSave(loader, saver);
+            future.complete(value);
+            return value;
+        } catch (RuntimeException exception) {
+            future.completeExceptionally(exception);
+            throw exception;
+        } finally {
+            loading.remove(key, future);
+        }
+    }
+
+    /**
+     * 使用Redis锁在多个节点之间合并加载，拿不到锁的节点短暂等待其他节点写入缓存，
+     * 等待超时仍未写入时自行加载，保证锁持有者异常时请求不会一直阻塞
+     */
+    private <T> T loadWithLock(String key, Supplier<T> cached, Supplier<T> loader, Consumer<T> saver) {
+        String lockKey = Const.CACHE_LOAD_LOCK + key;
+        String token = UUID.randomUUID().toString();
+        if(Boolean.TRUE.equals(template.opsForValue().setIfAbsent(lockKey, token, LOAD_LOCK_MILLIS, TimeUnit.MILLISECONDS))) {
+            try {
+                return this.loadAndSave(loader, saver);
+            } finally {
+                template.execute(UNLOCK_SCRIPT, List.of(lockKey), token);
+            }
+        }
+        long deadline = System.currentTimeMillis() + LOAD_LOCK_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            T value = cached.get();
+            if(value != null) return value;
+            if(!Boolean.TRUE.equals(template.hasKey(lockKey))) break;
+        }
+        return this.loadAndSave(loader, saver);
+    }
+
+    private <T> T loadAndSave(Supplier<T> loader, Consumer<T> saver) {
+        T value = loader.get();
+        if(value != null) saver.accept(value);
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T take(String key, Function<byte[], T> parser) {
+        CacheCounter counter = counters.computeIfAbsent(this.prefixOf(key), prefix -> new CacheCounter());
+        if(local == null) {
+            byte[] bytes = byteRedisTemplate.opsForValue().get(key);
+            counter.record(bytes != null, false);
+            return bytes == null ? null : this.decode(key, bytes, parser);
+        }
+        LocalEntry entry = local.getIfPresent(key);
+        if(entry != null) {
+            counter.record(true, true);
+            return (T) entry.value();
+        }
+        long generation = invalidations.get();
+        byte[] rawKey = key.getBytes(StandardCharsets.UTF_8);
+        List<Object> result = byteRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.stringCommands().get(rawKey);
+            connection.keyCommands().pTtl(rawKey);
+            return null;
+        });
+        byte[] bytes = (byte[]) result.get(0);
+        counter.record(bytes != null, false);
+        if(bytes == null) return null;
+        T value = this.decode(key, bytes, parser);
+        if(value != null && result.get(1) instanceof Long ttl && ttl > 0 && generation == invalidations.get())
+            local.put(key, new LocalEntry(value, bytes.length, Math.min(ttl, TimeUnit.SECONDS.toMillis(localMaxTtl))));
+        return value;
+    }
+
+    private void save(String key, Object value, byte[] encoded, long expire) {
+        byte[] bytes = this.compress(encoded);
+        byteRedisTemplate.opsForValue().set(key, bytes, expire, TimeUnit.SECONDS);
+        if(local != null)
+            local.put(key, new LocalEntry(value, bytes.length, TimeUnit.SECONDS.toMillis(Math.min(expire, localMaxTtl))));
+    }
+
+    /**
+     * 解码缓存内容，无法解析的内容（如编码方式切换前写入的旧数据）视为未命中
+     */
+    private <T> T decode(String key, byte[] bytes, Function<byte[], T> parser) {
+        try {
+            return parser.apply(this.decompress(bytes));
+        } catch (RuntimeException exception) {
+            log.warn("缓存 {} 内容无法解析，已忽略: {}", key, exception.getMessage());
+            return null;
+        }
+    }
+
+    private byte[] compress(byte[] data) {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream(data.length / 2 + 1);
+        try {
+            if(data.length < compressThreshold) {
+                stream.write(FLAG_PLAIN);
+                stream.write(data);
+            } else {
+                stream.write(FLAG_GZIP);
+                try (GZIPOutputStream gzip = new GZIPOutputStream(stream)) {
+                    gzip.write(data);
+                }
+            }
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+        return stream.toByteArray();
+    }
+
+    private byte[] decompress(byte[] data) {
+        if(data.length == 0 || data[0] == FLAG_PLAIN)
+            return Arrays.copyOfRange(data, Math.min(1, data.length), data.length);
+        if(data[0] != FLAG_GZIP)
+            throw new IllegalStateException("未知的缓存内容标记: " + data[0]);
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(data, 1, data.length - 1))) {
+            return gzip.readAllBytes();
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    private void publishInvalidate(String key) {
+        this.invalidateLocal(key);
+        template.convertAndSend(Const.CACHE_INVALIDATE_CHANNEL, key);
+    }
+
+    /**
+     * 清除一级缓存中的指定键，支持使用*通配符
+     * @param key 键或通配符表达式
+     */
+    private void invalidateLocal(String key) {
+        if(local == null) return;
+        invalidations.incrementAndGet();
+        if(key.contains("*")) {
+            Pattern pattern = Pattern.compile(Arrays.stream(key.split("\\*", -1))
+                    .map(Pattern::quote)
+                    .collect(Collectors.joining(".*")));
+            local.asMap().keySet().removeIf(k -> pattern.matcher(k).matches());
+        } else {
+            local.invalidate(key);
+        }
+    }
+
+    /**
+     * 取键的前两段作为统计分组，如 topic:preview:1:0 归入 topic:preview:
+     * @param key 键
+     * @return 分组前缀
+     */
+    private String prefixOf(String key) {
+        int first = key.indexOf(':');
+        int second = first < 0 ? -1 : key.indexOf(':', first + 1);
+        return second < 0 ? key : key.substring(0, second + 1);
+    }
+
+    private record CacheEnvelope<T>(T value, long expireAt, long delta) { }
+
+    private record NamespaceVersion(long version, long expireAt) { }
+
+    private record LocalEntry(Object value, int weight, long ttlMillis) { }
+
+    private static class LocalExpiry implements Expiry<String, LocalEntry> {
+        @Override
+        public long expireAfterCreate(String key, LocalEntry value, long currentTime) {
+            return TimeUnit.MILLISECONDS.toNanos(value.ttlMillis());
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, LocalEntry value, long currentTime, long currentDuration) {
+            return TimeUnit.MILLISECONDS.toNanos(value.ttlMillis());
+        }
+
+        @Override
+        public long expireAfterRead(String key, LocalEntry value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+
+    private static class CacheCounter {
+        final LongAdder local = new LongAdder();
+        final LongAdder redis = new LongAdder();
+        final LongAdder miss = new LongAdder();
+
+        void record(boolean hit, boolean fromLocal) {
+            if(!hit) miss.increment();
+            else if(fromLocal) local.increment();
+            else redis.increment();
+        }
+
+        Map<String, Long> snapshot() {
+            return Map.of("local", local.sum(), "redis", redis.sum(), "miss", miss.sum());
+        }
     }
 }
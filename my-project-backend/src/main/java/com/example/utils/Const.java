@@ -24,10 +24,33 @@ public final class Const {
     //用户角色
     public final static String ROLE_DEFAULT = "user";
     public final static String ROLE_ADMIN = "admin";
+    //用户公开信息
+    public final static String USER_CARD_CACHE = "user:card:";
+    public final static String USER_CARD_VERSION = "user:card-version:";
+    //缓存相关
+    public final static String CACHE_INVALIDATE_CHANNEL = "cache:invalidate";
+    public final static String CACHE_NAMESPACE_CHANNEL = "cache:namespace";
+    public final static String CACHE_VERSION = "cache:version:";
+    public final static String CACHE_LOAD_LOCK = "cache:lock:";
     //论坛相关
     public final static String FORUM_WEATHER_CACHE = "weather:cache:";
     public final static String FORUM_IMAGE_COUNTER = "forum:image:";
     public final static String FORUM_TOPIC_CREATE_COUNTER = "forum:topic:create:";
     public final static String FORUM_TOPIC_COMMENT_COUNTER = "forum:topic:comment:";
     public final static String FORUM_TOPIC_PREVIEW_CACHE = "topic:preview:";
+    public final static String FORUM_TOPIC_PREVIEW_OWNER = "topic:preview:owner:";
+    public final static String FORUM_TOPIC_STATS_CACHE = "topic:stats:";
+    public final static String FORUM_TOPIC_STATS_VERSION = "topic:stats-version:";
+    public final static String FORUM_TOPIC_STATS_RECONCILE_LOCK = "topic:stats-reconcile:lock";
+    public final static String FORUM_TOPIC_STATS_RECONCILE_CURSOR = "topic:stats-reconcile:cursor";
+    public final static String FORUM_TOPIC_DETAIL_CACHE = "topic:detail:";
+    public final static String FORUM_TOPIC_DETAIL_MISSING = "topic:detail-missing:";
+    public final static String FORUM_INTERACT_BITMAP = "interact:bitmap:";
+    public final static String FORUM_INTERACT_JOURNAL = "interact:journal";
+    public final static String FORUM_INTERACT_JOURNAL_LOCK = "interact:journal:lock";
+    public final static String FORUM_INTERACT_BITMAP_CHANNEL = "interact:bitmap:changed";
+    public final static String FORUM_TOPIC_HOT_RANK = "topic:hot:rank:";
+    public final static String FORUM_TOPIC_HOT_INFO = "topic:hot:info:";
+    public final static String FORUM_TOPIC_HOT_EPOCH = "topic:hot:epoch";
+    public final static String FORUM_REFERENCE_CHANNEL = "topic:reference:refresh";
 }
@@ -1,7 +1,9 @@
 package com.example.utils;
 
 import com.example.entity.RestBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
 
 import java.util.function.Supplier;
 
@@ -14,4 +16,21 @@ public class ControllerUtils {
         else
             return RestBean.failure(400, message);
     }
+
+    /**
+     * 处理带有ETag的条件请求，客户端已有的数据没有变化时直接响应304，不再返回响应体
+     * @param request 当前请求
+     * @param etag 数据当前的ETag
+     * @param data 响应数据
+     * @return 响应实体，304时为null
+     * @param <T> 响应数据类型
+     */
+    public <T> RestBean<T> notModifiedHandle(ServletWebRequest request, String etag, T data){
+        //允许浏览器保存响应，但每次使用前都需要重新验证
+        if(request.getResponse() != null)
+            request.getResponse().setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        if(request.checkNotModified(etag))
+            return null;
+        return RestBean.success(data);
+    }
 }
@@ -0,0 +1,199 @@
+package com.example.utils;
+
+import org.springframework.beans.BeanUtils;
+import org.springframework.util.ClassUtils;
+
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 对象复制方案，每一对源类型与目标类型只在第一次使用时解析字段并生成MethodHandle，
+ * 之后的复制直接调用缓存的方案，不再进行反射查找
+ * 只使用MethodHandle而不在运行时生成类，因此也可以在GraalVM原生镜像中使用
+ */
+public final class CopyPlan {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final Map<PlanKey, CopyPlan> PLANS = new ConcurrentHashMap<>();
+    //数据库中以字符串保存的时间复制到日期类型字段时使用的转换
+    private static final MethodHandle STRING_TO_DATE;
+
+    static {
+        try {
+            STRING_TO_DATE = LOOKUP.findStatic(CopyPlan.class, "parseDate", GETTER_TYPE);
+        } catch (ReflectiveOperationException exception) {
+            throw new ExceptionInInitializerError(exception);
+        }
+    }
+
+    //目标类型的无参构造方法，没有时为null
+    private final MethodHandle constructor;
+    private final Step[] steps;
+
+    private CopyPlan(MethodHandle constructor, List<Step> steps) {
+        this.constructor = constructor;
+        this.steps = steps.toArray(Step[]::new);
+    }
+
+    /**
+     * 创建目标类型的对象，并将源对象中同名且类型兼容的成员变量直接复制过去，
+     * 只处理两个类型自身声明的成员变量，字符串复制到日期类型时会进行转换，
+     * 其他类型不兼容的同名字段在生成方案时直接抛出异常，避免转换结果中悄悄缺少数据
+     * @param source 源对象
+     * @param targetType 目标类型，需要有公开的无参构造方法
+     * @return 目标对象
+     * @param <T> 目标类型
+     * @throws ReflectiveOperationException 目标类型无法创建时抛出
+     * @throws IllegalStateException 存在无法转换的同名字段时抛出
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T copyFields(Object source, Class<T> targetType) throws ReflectiveOperationException {
+        PlanKey key = new PlanKey(source.getClass(), targetType, true, List.of());
+        CopyPlan plan = PLANS.get(key);
+        if(plan == null) {
+            plan = fieldPlan(source.getClass(), targetType);
+            PLANS.putIfAbsent(key, plan);
+        }
+        try {
+            Object target = plan.constructor.invoke();
+            plan.apply(source, target);
+            return (T) target;
+        } catch (RuntimeException | Error exception) {
+            throw exception;
+        } catch (Throwable throwable) {
+            throw new InvocationTargetException(throwable);
+        }
+    }
+
+    /**
+     * 按属性的getter与setter复制对象，效果与Spring的BeanUtils.copyProperties相同，
+     * 类型不兼容的属性同样会被跳过，但每一组源类型、目标类型与忽略属性只解析一次
+     * @param source 源对象
+     * @param target 目标对象
+     * @param ignores 忽略的属性名称
+     */
+    public static void copyProperties(Object source, Object target, String... ignores) {
+        copyProperties(source, target, List.of(ignores));
+    }
+
+    /**
+     * 按属性的getter与setter复制对象，忽略属性以列表形式给出
+     * @param source 源对象
+     * @param target 目标对象
+     * @param ignores 忽略的属性名称
+     */
+    public static void copyProperties(Object source, Object target, List<String> ignores) {
+        PlanKey key = new PlanKey(source.getClass(), target.getClass(), false, List.copyOf(ignores));
+        CopyPlan plan = PLANS.computeIfAbsent(key, k -> propertyPlan(k.source(), k.target(), k.ignores()));
+        try {
+            plan.apply(source, target);
+        } catch (RuntimeException | Error exception) {
+            throw exception;
+        } catch (Throwable throwable) {
+            throw new IllegalStateException("复制对象属性时出现错误", throwable);
+        }
+    }
+
+    private void apply(Object source, Object target) throws Throwable {
+        for (Step step : steps) {
+            Object value = (Object) step.getter.invokeExact(source);
+            //基本类型的字段无法接收null，保持默认值
+            if(value == null && step.primitive) continue;
+            step.setter.invokeExact(target, value);
+        }
+    }
+
+    private static CopyPlan fieldPlan(Class<?> sourceType, Class<?> targetType) throws ReflectiveOperationException {
+        MethodHandle constructor = LOOKUP.findConstructor(targetType, MethodType.methodType(void.class))
+                .asType(MethodType.methodType(Object.class));
+        List<Step> steps = new ArrayList<>();
+        for (Field field : targetType.getDeclaredFields()) {
+            if(Modifier.isStatic(field.getModifiers()) || Modifier.isFinal(field.getModifiers())) continue;
+            Field source;
+            try {
+                source = sourceType.getDeclaredField(field.getName());
+            } catch (NoSuchFieldException exception) {
+                continue;
+            }
+            if(Modifier.isStatic(source.getModifiers())) continue;
+            if(!field.trySetAccessible() || !source.trySetAccessible()) continue;
+            MethodHandle getter = LOOKUP.unreflectGetter(source).asType(GETTER_TYPE);
+            if(source.getType() == String.class && field.getType() == Date.class) {
+                getter = MethodHandles.filterReturnValue(getter, STRING_TO_DATE);
+            } else if(!ClassUtils.isAssignable(field.getType(), source.getType())) {
+                throw new IllegalStateException("无法将 %s.%s 的类型 %s 复制到 %s.%s 的类型 %s".formatted(
+                        sourceType.getSimpleName(), source.getName(), source.getType().getSimpleName(),
+                        targetType.getSimpleName(), field.getName(), field.getType().getSimpleName()));
+            }
+            steps.add(new Step(getter,
+                    LOOKUP.unreflectSetter(field).asType(SETTER_TYPE),
+                    field.getType().isPrimitive()));
+        }
+        return new CopyPlan(constructor, steps);
+    }
+
+    private static CopyPlan propertyPlan(Class<?> sourceType, Class<?> targetType, List<String> ignores) {
+        List<Step> steps = new ArrayList<>();
+        for (PropertyDescriptor property : BeanUtils.getPropertyDescriptors(targetType)) {
+            Method writer = property.getWriteMethod();
+            if(writer == null || ignores.contains(property.getName())) continue;
+            PropertyDescriptor sourceProperty = BeanUtils.getPropertyDescriptor(sourceType, property.getName());
+            if(sourceProperty == null || sourceProperty.getReadMethod() == null) continue;
+            Method reader = sourceProperty.getReadMethod();
+            if(!ClassUtils.isAssignable(writer.getParameterTypes()[0], reader.getReturnType())) continue;
+            if(!reader.trySetAccessible() || !writer.trySetAccessible()) continue;
+            try {
+                steps.add(new Step(
+                        LOOKUP.unreflect(reader).asType(GETTER_TYPE),
+                        LOOKUP.unreflect(writer).asType(SETTER_TYPE),
+                        writer.getParameterTypes()[0].isPrimitive()));
+            } catch (IllegalAccessException exception) {
+                throw new IllegalStateException("无法访问属性 " + property.getName(), exception);
+            }
+        }
+        return new CopyPlan(null, steps);
+    }
+
+    /**
+     * 将数据库中以字符串形式读出的时间转换为日期，支持"2023-08-01 12:00:00"与ISO格式
+     * @param value 字符串形式的时间
+     * @return 日期
+     * @throws IllegalArgumentException 无法识别的时间格式
+     */
+    private static Object parseDate(Object value) {
+        if(value == null) return null;
+        String text = value.toString().trim();
+        try {
+            return new Date(Timestamp.valueOf(text).getTime());
+        } catch (IllegalArgumentException ignored) {
+            //不是数据库格式，继续尝试ISO格式
+        }
+        try {
+            return Date.from(LocalDateTime.parse(text).atZone(ZoneId.systemDefault()).toInstant());
+        } catch (DateTimeParseException exception) {
+            throw new IllegalArgumentException("无法识别的时间格式: " + text, exception);
+        }
+    }
+
+    //fields为true时直接复制成员变量，否则通过getter与setter复制属性
+    private record PlanKey(Class<?> source, Class<?> target, boolean fields, List<String> ignores) {}
+
+    private record Step(MethodHandle getter, MethodHandle setter, boolean primitive) {}
+}
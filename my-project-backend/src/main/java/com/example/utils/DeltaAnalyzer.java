@@ -0,0 +1,103 @@
+package com.example.utils;
+
+import com.alibaba.fastjson2.JSONException;
+import com.alibaba.fastjson2.JSONReader;
+import com.alibaba.fastjson2.JSONWriter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Quill编辑器Delta格式内容的流式分析工具，一次读取同时完成文本长度检查、预览文本与图片提取，
+ * 并输出规范化的JSON字符串，不需要先把整个内容解析成JSONObject
+ */
+public final class DeltaAnalyzer {
+
+    private DeltaAnalyzer() {}
+
+    /**
+     * 分析结果
+     * @param valid 格式正确且文本长度没有超出限制
+     * @param malformed 内容不是合法的JSON或者不是Delta格式，为false的无效结果表示文本长度超出限制
+     * @param length 文本长度，超出限制时为读到超出位置的长度
+     * @param preview 预览文本
+     * @param images 图片地址
+     * @param normalized 规范化之后的内容，只保留ops部分，无效时为null
+     */
+    public record Result(boolean valid, boolean malformed, int length, String preview, List<String> images, String normalized) {
+        private static Result malformed(int length) {
+            return new Result(false, true, length, "", List.of(), null);
+        }
+
+        private static Result tooLong(int length) {
+            return new Result(false, false, length, "", List.of(), null);
+        }
+    }
+
+    /**
+     * 分析Delta格式内容，文本长度一旦超出限制立即停止读取
+     * @param json Delta格式的JSON字符串
+     * @param maxLength 最大文本长度
+     * @param previewLength 预览文本最大长度
+     * @return 分析结果
+     */
+    public static Result analyze(String json, int maxLength, int previewLength) {
+        if(json == null || json.isEmpty()) return Result.malformed(0);
+        int length = 0;
+        boolean hasOps = false;
+        StringBuilder preview = new StringBuilder();
+        List<String> images = new ArrayList<>();
+        try (JSONReader reader = JSONReader.of(json);
+             JSONWriter writer = JSONWriter.of()) {
+            if(!reader.nextIfMatch('{')) return Result.malformed(0);
+            writer.startObject();
+            while (!reader.nextIfMatch('}')) {
+                String field = reader.readFieldName();
+                //没有读到字段名说明对象没有正确结束
+                if(field == null) return Result.malformed(length);
+                if(!"ops".equals(field)) {
+                    reader.skipValue();
+                    continue;
+                }
+                if(hasOps || !reader.nextIfMatch('[')) return Result.malformed(length);
+                hasOps = true;
+                writer.writeName("ops");
+                writer.writeColon();
+                writer.startArray();
+                for (int i = 0; !reader.nextIfMatch(']'); i++) {
+                    if(i > 0) writer.writeComma();
+                    if(!reader.nextIfMatch('{')) return Result.malformed(length);
+                    writer.startObject();
+                    while (!reader.nextIfMatch('}')) {
+                        String key = reader.readFieldName();
+                        if(key == null) return Result.malformed(length);
+                        writer.writeName(key);
+                        writer.writeColon();
+                        if("insert".equals(key) && reader.isString()) {
+                            String text = reader.readString();
+                            length += text.length();
+                            if(length > maxLength) return Result.tooLong(length);
+                            if(preview.length() < previewLength) preview.append(text);
+                            writer.writeString(text);
+                        } else {
+                            Object value = reader.readAny();
+                            if("insert".equals(key) && value instanceof Map<?, ?> map && map.get("image") != null)
+                                images.add(map.get("image").toString());
+                            writer.writeAny(value);
+                        }
+                    }
+                    writer.endObject();
+                }
+                writer.endArray();
+            }
+            writer.endObject();
+            if(!hasOps || !reader.isEnd()) return Result.malformed(length);
+            String text = preview.length() > previewLength ? preview.substring(0, previewLength) : preview.toString();
+            return new Result(true, false, length, text, images, writer.toString());
+        } catch (JSONException exception) {
+            //语法错误与长度超出限制分开报告，便于提示用户
+            return Result.malformed(length);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.controller;
+
+import com.example.entity.dto.Topic;
+import com.example.entity.dto.TopicType;
+import com.example.mapper.TopicMapper;
+import com.example.mapper.TopicTypeMapper;
+import com.example.service.impl.TopicReferenceServiceImpl;
+import com.example.utils.ControllerUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@ExtendWith(MockitoExtension.class)
+class ForumControllerTest {
+
+    @Mock
+    TopicTypeMapper typeMapper;
+
+    @Mock
+    TopicMapper topicMapper;
+
+    private final TopicReferenceServiceImpl referenceService = new TopicReferenceServiceImpl();
+    private MockMvc mvc;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(referenceService, "typeMapper", typeMapper);
+        ReflectionTestUtils.setField(referenceService, "topicMapper", topicMapper);
+        ForumController controller = new ForumController();
+        ReflectionTestUtils.setField(controller, "referenceService", referenceService);
+        ReflectionTestUtils.setField(controller, "utils", new ControllerUtils());
+        mvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @Test
+    void typesRespondNotModifiedWithoutBodyWhenETagMatches() throws Exception {
+        when(typeMapper.selectList(any())).thenReturn(List.of(type(1, "日常闲聊")));
+        when(topicMapper.selectList(any())).thenReturn(List.of());
+        referenceService.reload();
+
+        String etag = this.fetchETag("/api/forum/types");
+
+        mvc.perform(get("/api/forum/types").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(content().bytes(new byte[0]));
+    }
+
+    @Test
+    void topTopicsRespondNotModifiedWithoutBodyWhenETagMatches() throws Exception {
+        when(typeMapper.selectList(any())).thenReturn(List.of());
+        when(topicMapper.selectList(any())).thenReturn(List.of(topic(1, "置顶公告")));
+        referenceService.reload();
+
+        String etag = this.fetchETag("/api/forum/top-topic");
+
+        mvc.perform(get("/api/forum/top-topic").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().bytes(new byte[0]));
+    }
+
+    @Test
+    void etagChangesAfterReload() throws Exception {
+        when(typeMapper.selectList(any()))
+                .thenReturn(List.of(type(1, "日常闲聊")))
+                .thenReturn(List.of(type(1, "日常闲聊"), type(2, "真诚交友")));
+        when(topicMapper.selectList(any()))
+                .thenReturn(List.of(topic(1, "置顶公告")))
+                .thenReturn(List.of(topic(2, "新的置顶公告")));
+        referenceService.reload();
+        String oldTypes = this.fetchETag("/api/forum/types");
+        String oldTops = this.fetchETag("/api/forum/top-topic");
+
+        referenceService.reload();
+
+        //旧的ETag不再匹配，重新返回完整数据与新的ETag
+        String newTypes = mvc.perform(get("/api/forum/types").header(HttpHeaders.IF_NONE_MATCH, oldTypes))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.length()").value(2))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        String newTops = mvc.perform(get("/api/forum/top-topic").header(HttpHeaders.IF_NONE_MATCH, oldTops))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data[0].id").value(2))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(newTypes);
+        assertNotEquals(oldTypes, newTypes);
+        assertNotEquals(oldTops, newTops);
+        mvc.perform(get("/api/forum/types").header(HttpHeaders.IF_NONE_MATCH, newTypes))
+                .andExpect(status().isNotModified());
+    }
+
+    private String fetchETag(String url) throws Exception {
+        String etag = mvc.perform(get(url))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache"))
+                .andExpect(jsonPath("$.code").value(200))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag);
+        return etag;
+    }
+
+    private static TopicType type(int id, String name) {
+        TopicType type = new TopicType();
+        type.setId(id);
+        type.setName(name);
+        type.setDesc(name);
+        type.setColor("#ffffff");
+        return type;
+    }
+
+    private static Topic topic(int id, String title) {
+        Topic topic = new Topic();
+        topic.setId(id);
+        topic.setTitle(title);
+        topic.setTime(new Date(1700000000000L));
+        return topic;
+    }
+}
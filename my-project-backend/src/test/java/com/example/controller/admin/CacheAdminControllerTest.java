@@ -0,0 +1,38 @@
+package com.example.controller.admin;
+
+import com.example.utils.CacheUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CacheAdminControllerTest {
+
+    @Mock
+    CacheUtils utils;
+
+    @InjectMocks
+    CacheAdminController controller;
+
+    @ParameterizedTest
+    @ValueSource(strings = {"*", "jwt:blacklist:*", "banned:block:*", "flow:*", "*topic:preview:*", "topic:hot:*"})
+    void purgeRejectsNonCachePatterns(String pattern) {
+        assertEquals(400, controller.purge(pattern).code());
+        verify(utils, never()).deleteCachePattern(anyString());
+    }
+
+    @Test
+    void purgeAllowsCachePrefixes() {
+        when(utils.deleteCachePattern("topic:preview:*")).thenReturn(3L);
+
+        assertEquals(3L, controller.purge("topic:preview:*").data());
+    }
+}
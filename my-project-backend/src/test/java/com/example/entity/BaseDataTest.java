@@ -0,0 +1,85 @@
+package com.example.entity;
+
+import com.example.entity.dto.Account;
+import com.example.entity.dto.Notification;
+import com.example.entity.vo.response.AccountVO;
+import com.example.entity.vo.response.NotificationVO;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Timestamp;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BaseDataTest {
+
+    @Test
+    void notificationTimeIsConvertedToDate() {
+        Notification notification = new Notification();
+        notification.setId(3);
+        notification.setUid(1);
+        notification.setTitle("title");
+        notification.setContent("content");
+        notification.setType("info");
+        notification.setUrl("/topic/1");
+        notification.setTime("2023-08-01 12:30:00");
+
+        NotificationVO vo = notification.asViewObject(NotificationVO.class);
+
+        assertEquals(3, vo.getId());
+        assertEquals("title", vo.getTitle());
+        assertEquals("content", vo.getContent());
+        assertEquals("info", vo.getType());
+        assertEquals("/topic/1", vo.getUrl());
+        assertEquals(Timestamp.valueOf("2023-08-01 12:30:00").getTime(), vo.getTime().getTime());
+    }
+
+    @Test
+    void notificationAcceptsIsoTimeAndNull() {
+        Notification notification = new Notification();
+        notification.setTime("2023-08-01T12:30:00");
+        assertEquals(Timestamp.valueOf("2023-08-01 12:30:00").getTime(),
+                notification.asViewObject(NotificationVO.class).getTime().getTime());
+
+        notification.setTime(null);
+        assertNull(notification.asViewObject(NotificationVO.class).getTime());
+    }
+
+    @Test
+    void unreadableTimeFailsLoudly() {
+        Notification notification = new Notification();
+        notification.setTime("yesterday");
+
+        assertThrows(IllegalArgumentException.class, () -> notification.asViewObject(NotificationVO.class));
+    }
+
+    @Test
+    void accountIsCopiedWithoutPassword() {
+        Date registerTime = new Date(1690000000000L);
+        Account account = new Account(7, "user", "secret", "a@b.c", "admin", "/avatar", registerTime, true, false);
+
+        AccountVO vo = account.asViewObject(AccountVO.class);
+
+        assertEquals(7, vo.getId());
+        assertEquals("user", vo.getUsername());
+        assertEquals("a@b.c", vo.getEmail());
+        assertEquals("admin", vo.getRole());
+        assertEquals("/avatar", vo.getAvatar());
+        assertEquals(registerTime, vo.getRegisterTime());
+        assertTrue(vo.isMute());
+        assertFalse(vo.isBanned());
+    }
+
+    @Test
+    void incompatibleFieldFailsWhenPlanIsBuilt() {
+        assertThrows(IllegalStateException.class, () -> new Source().asViewObject(Target.class));
+    }
+
+    public static class Source implements BaseData {
+        Integer count = 1;
+    }
+
+    public static class Target {
+        Date count;
+    }
+}
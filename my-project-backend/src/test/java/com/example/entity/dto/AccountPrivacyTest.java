@@ -0,0 +1,54 @@
+package com.example.entity.dto;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccountPrivacyTest {
+
+    @Test
+    void hiddenFieldsMatchPerFieldLogicForEveryCombination() {
+        for (int mask = 0; mask < 1 << 5; mask++) {
+            AccountPrivacy privacy = new AccountPrivacy(1);
+            privacy.setPhone((mask & 1) == 0);
+            privacy.setEmail((mask & 1 << 1) == 0);
+            privacy.setWx((mask & 1 << 2) == 0);
+            privacy.setQq((mask & 1 << 3) == 0);
+            privacy.setGender((mask & 1 << 4) == 0);
+
+            assertEquals(mask, privacy.hiddenMask());
+            assertEquals(this.reflectHiddenFields(privacy), privacy.hiddenFields(), "mask " + mask);
+        }
+    }
+
+    @Test
+    void sharedHiddenFieldsCannotBeModified() {
+        AccountPrivacy privacy = new AccountPrivacy(1);
+        privacy.setPhone(false);
+
+        List<String> fields = privacy.hiddenFields();
+
+        assertThrows(UnsupportedOperationException.class, () -> fields.add("email"));
+        assertThrows(UnsupportedOperationException.class, () -> fields.set(0, "email"));
+        //其他用户取到的同一组合不受影响
+        AccountPrivacy other = new AccountPrivacy(2);
+        other.setPhone(false);
+        assertEquals(List.of("phone"), other.hiddenFields());
+    }
+
+    //原先逐个反射字段的实现，作为查表结果的参照
+    private List<String> reflectHiddenFields(AccountPrivacy privacy) {
+        List<String> strings = new LinkedList<>();
+        for (Field field : AccountPrivacy.class.getDeclaredFields()) {
+            try {
+                if(field.getType().equals(boolean.class) && !field.getBoolean(privacy))
+                    strings.add(field.getName());
+            } catch (Exception ignored) {}
+        }
+        return strings;
+    }
+}
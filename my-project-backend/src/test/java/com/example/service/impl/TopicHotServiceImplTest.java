@@ -0,0 +1,77 @@
+package com.example.service.impl;
+
+import com.example.entity.dto.Topic;
+import com.example.mapper.TopicMapper;
+import com.example.service.TopicReferenceService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TopicHotServiceImplTest {
+
+    private static final List<String> KEYS = List.of("topic:hot:epoch", "topic:hot:info:1", "topic:hot:rank:2", "topic:hot:rank:0");
+
+    @Mock
+    StringRedisTemplate template;
+
+    @Mock
+    TopicMapper topicMapper;
+
+    @Mock
+    TopicReferenceService referenceService;
+
+    @InjectMocks
+    TopicHotServiceImpl service;
+
+    @Test
+    void unlikeDoesNotSubtractAtCurrentWeight() {
+        when(topicMapper.selectList(any())).thenReturn(List.of(this.topic(1, 2)));
+
+        service.increaseScore(Map.of(1, 1), "like");
+        service.increaseScore(Map.of(1, -1), "like");
+
+        //点赞按当时的权重累加一次，取消点赞不再按当前更大的权重扣减，旧的贡献交给衰减处理
+        verify(template, times(1)).execute(any(), eq(KEYS), anyString(), eq("1.0"), anyString(),
+                eq("1"), anyString(), anyString());
+        verify(topicMapper, times(1)).selectList(any());
+        verifyNoMoreInteractions(template);
+    }
+
+    @Test
+    void onlyPositiveDeltasAreScored() {
+        when(topicMapper.selectList(any())).thenReturn(List.of(this.topic(1, 2)));
+
+        service.increaseScore(Map.of(1, 2, 3, -1), "collect");
+
+        verify(template).execute(any(), eq(KEYS), anyString(), eq("4.0"), anyString(),
+                eq("1"), anyString(), anyString());
+        verifyNoMoreInteractions(template);
+    }
+
+    @Test
+    void commentDeleteTouchesNothing() {
+        service.increaseScore(Map.of(1, -1), "comment");
+
+        verifyNoInteractions(template, topicMapper);
+    }
+
+    private Topic topic(int id, int type) {
+        Topic topic = new Topic();
+        topic.setId(id);
+        topic.setType(type);
+        topic.setTitle("topic" + id);
+        topic.setTime(new Date());
+        return topic;
+    }
+}
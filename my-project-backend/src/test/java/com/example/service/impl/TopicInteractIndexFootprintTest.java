@@ -0,0 +1,72 @@
+package com.example.service.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 点赞位图索引的内存占用测量，只在内存中构建位图，不需要数据库与Redis
+ * 模拟100万用户、10万个帖子，每个帖子的点赞人数按排名服从Zipf分布（少数热门帖子点赞很多，大部分帖子很少），
+ * 分别统计本地缓存中的内存占用与保存到Redis时的序列化大小，并测量单个查询与整页批量查询的耗时
+ * 运行较慢，默认跳过，需要时执行：mvn test -Dtest=TopicInteractIndexFootprintTest -Dfootprint=true
+ */
+@EnabledIfSystemProperty(named = "footprint", matches = "true")
+class TopicInteractIndexFootprintTest {
+
+    private static final int USERS = 1_000_000;
+    private static final int TOPICS = 100_000;
+    //排名第一的帖子的点赞人数
+    private static final int TOP_LIKES = 200_000;
+    private static final int QUERIES = 1_000_000;
+
+    @Test
+    void measureFootprint() {
+        Random random = new Random(42);
+        RoaringBitmap[] bitmaps = new RoaringBitmap[TOPICS];
+        long likes = 0, memory = 0, serialized = 0;
+        for (int rank = 1; rank <= TOPICS; rank++) {
+            int count = Math.max(1, TOP_LIKES / rank);
+            RoaringBitmap bitmap = new RoaringBitmap();
+            while (bitmap.getCardinality() < count)
+                bitmap.add(random.nextInt(USERS) + 1);
+            bitmap.runOptimize();
+            bitmaps[rank - 1] = bitmap;
+            likes += count;
+            memory += bitmap.getLongSizeInBytes();
+            serialized += bitmap.serializedSizeInBytes();
+        }
+        System.out.printf("用户 %,d  帖子 %,d  点赞总数 %,d%n", USERS, TOPICS, likes);
+        System.out.printf("本地内存占用 %,.1f MB  平均每个点赞 %.2f 字节%n", memory / 1048576.0, (double) memory / likes);
+        System.out.printf("Redis序列化大小 %,.1f MB  平均每个点赞 %.2f 字节%n", serialized / 1048576.0, (double) serialized / likes);
+        System.out.printf("对照：每个点赞保存一个int需要 %,.1f MB%n", likes * 4 / 1048576.0);
+
+        long hits = 0;
+        for (int round = 0; round < 2; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < QUERIES; i++)
+                if(bitmaps[random.nextInt(TOPICS)].contains(random.nextInt(USERS) + 1)) hits++;
+            long single = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < QUERIES / 10; i++) {
+                int uid = random.nextInt(USERS) + 1;
+                int first = random.nextInt(TOPICS - 10);
+                for (int j = 0; j < 10; j++)
+                    if(bitmaps[first + j].contains(uid)) hits++;
+            }
+            long page = System.nanoTime() - start;
+            //第一轮为预热，只输出第二轮的结果
+            if(round == 1) {
+                System.out.printf("单次是否点赞查询 %.1f ns%n", (double) single / QUERIES);
+                System.out.printf("整页10个帖子批量查询 %.1f ns%n", (double) page / (QUERIES / 10));
+            }
+        }
+        long cardinality = 0;
+        for (RoaringBitmap bitmap : bitmaps) cardinality += bitmap.getCardinality();
+        assertEquals(likes, cardinality);
+        assertTrue(hits >= 0);
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.service.impl;
+
+import com.example.entity.dto.Interact;
+import com.example.mapper.TopicMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TopicInteractIndexServiceImplTest {
+
+    private static final byte[] EXPIRE = String.valueOf(86400).getBytes(StandardCharsets.UTF_8);
+    private static final List<String> KEYS = List.of("interact:bitmap:like:1", "interact:bitmap:version:like:1");
+
+    @Mock
+    TopicMapper mapper;
+
+    @Mock
+    RedisTemplate<String, byte[]> byteRedisTemplate;
+
+    @Mock
+    StringRedisTemplate template;
+
+    @Mock
+    RedisMessageListenerContainer container;
+
+    @InjectMocks
+    TopicInteractIndexServiceImpl service;
+
+    @Test
+    void changesAreAppliedToStoredBitmap() {
+        byte[] version = "5".getBytes(StandardCharsets.UTF_8);
+        when(byteRedisTemplate.executePipelined(any(RedisCallback.class)))
+                .thenReturn(Arrays.asList(version, this.serialize(RoaringBitmap.bitmapOf(2, 4))));
+
+        service.applyChanges("like", List.of(this.interact(1, 3)), List.of(this.interact(1, 2)));
+
+        //写回时携带读取到的版本号，位图在原有内容上修改，而不是删除后重新从数据库加载
+        verify(byteRedisTemplate).execute(any(), eq(KEYS), eq(EXPIRE), eq(version),
+                argThat((byte[] bytes) -> this.deserialize(bytes).equals(RoaringBitmap.bitmapOf(3, 4))));
+        verifyNoInteractions(mapper);
+        verify(template).convertAndSend(eq("interact:bitmap:changed"), anyString());
+    }
+
+    @Test
+    void missingBitmapIsLeftForNextLoad() {
+        when(byteRedisTemplate.executePipelined(any(RedisCallback.class))).thenReturn(Arrays.asList(null, null));
+
+        service.applyChanges("like", List.of(this.interact(1, 3)), List.of());
+
+        verify(byteRedisTemplate).execute(any(), eq(KEYS), eq(EXPIRE), eq(new byte[0]), eq(new byte[0]));
+        verifyNoInteractions(mapper);
+    }
+
+    @Test
+    void cardinalityLoadsFromDatabaseOnceAndSavesToRedis() {
+        when(byteRedisTemplate.executePipelined(any(RedisCallback.class))).thenReturn(Arrays.asList(null, null));
+        when(mapper.interactUids(1, "like")).thenReturn(List.of(4, 9, 16));
+
+        assertEquals(3, service.cardinality("like", 1));
+        assertTrue(service.contains("like", 1, 9));
+        assertFalse(service.contains("like", 1, 10));
+
+        //之后的查询直接使用本地位图
+        verify(mapper, times(1)).interactUids(1, "like");
+        verify(byteRedisTemplate, times(1)).executePipelined(any(RedisCallback.class));
+        verify(byteRedisTemplate).execute(any(), eq(KEYS), eq(new byte[0]),
+                argThat((byte[] bytes) -> this.deserialize(bytes).equals(RoaringBitmap.bitmapOf(4, 9, 16))), eq(EXPIRE));
+    }
+
+    @Test
+    void filterInteractedChecksEveryTopicOfThePage() {
+        when(byteRedisTemplate.executePipelined(any(RedisCallback.class))).thenReturn(
+                Arrays.asList(null, this.serialize(RoaringBitmap.bitmapOf(2, 5))),
+                Arrays.asList(null, this.serialize(RoaringBitmap.bitmapOf(5))),
+                Arrays.asList(null, this.serialize(RoaringBitmap.bitmapOf(2))));
+
+        assertEquals(Set.of(1, 3), service.filterInteracted("like", List.of(1, 2, 3), 2));
+        assertEquals(Set.of(1, 2), service.filterInteracted("like", List.of(1, 2, 3), 5));
+        //第二次查询使用第一次加载的本地位图
+        verify(byteRedisTemplate, times(3)).executePipelined(any(RedisCallback.class));
+        verifyNoInteractions(mapper);
+    }
+
+    private Interact interact(int tid, int uid) {
+        return new Interact(tid, uid, new Date(), "like");
+    }
+
+    private byte[] serialize(RoaringBitmap bitmap) {
+        ByteBuffer buffer = ByteBuffer.allocate(bitmap.serializedSizeInBytes());
+        bitmap.serialize(buffer);
+        return buffer.array();
+    }
+
+    private RoaringBitmap deserialize(byte[] bytes) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        try {
+            bitmap.deserialize(ByteBuffer.wrap(bytes));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bitmap;
+    }
+}
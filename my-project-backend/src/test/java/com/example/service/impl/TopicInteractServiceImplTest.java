@@ -0,0 +1,237 @@
+package com.example.service.impl;
+
+import com.example.mapper.TopicMapper;
+import com.example.service.TopicHotService;
+import com.example.service.TopicInteractIndexService;
+import com.example.service.TopicStatsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.*;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class TopicInteractServiceImplTest {
+
+    @Mock
+    TopicMapper mapper;
+
+    @Mock
+    TopicStatsService statsService;
+
+    @Mock
+    TopicHotService hotService;
+
+    @Mock
+    TopicInteractIndexService indexService;
+
+    @Mock
+    StringRedisTemplate template;
+
+    @Mock
+    TransactionTemplate transactionTemplate;
+
+    @Mock
+    ValueOperations<String, String> valueOperations;
+
+    @Mock
+    StreamOperations<String, Object, Object> streamOperations;
+
+    @InjectMocks
+    TopicInteractServiceImpl service;
+
+    //每次读取新日志时依次返回的批次
+    private final Deque<List<MapRecord<String, Object, Object>>> journal = new ArrayDeque<>();
+    private long sequence = 0;
+
+    @BeforeEach
+    void setUp() {
+        when(template.opsForValue()).thenReturn(valueOperations);
+        doReturn(streamOperations).when(template).opsForStream();
+        when(valueOperations.setIfAbsent(anyString(), anyString(), anyLong(), any(TimeUnit.class))).thenReturn(true);
+        when(streamOperations.read(any(Consumer.class), any(StreamReadOptions.class), any(StreamOffset.class)))
+                .thenAnswer(invocation -> {
+                    StreamOffset<?> offset = invocation.getArgument(2);
+                    if(!">".equals(offset.getOffset().getOffset())) return List.of();
+                    List<MapRecord<String, Object, Object>> batch = journal.poll();
+                    return batch == null ? List.of() : batch;
+                });
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        //解锁、续期与清理待写入状态的脚本都视为执行成功
+        doReturn(1L).when(template).execute(any(RedisScript.class), anyList(), any(Object[].class));
+    }
+
+    @Test
+    void repeatedLikeMovesScoreOnlyOnce() {
+        when(mapper.existingInteracts(anyList(), eq("like")))
+                .thenReturn(List.of())
+                .thenReturn(List.of("1:2"));
+        journal.add(List.of(this.record("like", 1, 2, true)));
+        journal.add(List.of(this.record("like", 1, 2, true)));
+
+        service.flush();
+        service.flush();
+
+        verify(mapper, times(1)).addInteract(anyList(), eq("like"));
+        verify(hotService, times(1)).increaseScore(anyMap(), anyString());
+        verify(hotService).increaseScore(Map.of(1, 1), "like");
+        verify(statsService, times(1)).increaseInteractCount(Map.of(1, 1), "like");
+    }
+
+    @Test
+    void unlikeOfMissingRowChangesNothing() {
+        when(mapper.existingInteracts(anyList(), eq("like"))).thenReturn(List.of());
+        journal.add(List.of(this.record("like", 1, 2, false)));
+
+        service.flush();
+
+        verify(mapper, never()).deleteInteract(anyList(), anyString());
+        verifyNoInteractions(hotService, statsService, indexService);
+        //没有实际变化也要确认日志，避免重复读取
+        verify(streamOperations).acknowledge(anyString(), anyString(), any(RecordId.class));
+    }
+
+    @Test
+    void journalBatchKeepsLastStatePerKeyAndWritesOnce() {
+        when(mapper.existingInteracts(anyList(), anyString())).thenReturn(List.of());
+        journal.add(List.of(
+                this.record("like", 1, 2, true),
+                this.record("like", 1, 3, true),
+                this.record("collect", 1, 2, true),
+                this.record("like", 1, 2, false)));
+
+        service.flush();
+
+        //同一用户对同一帖子的多次操作只保留最后一次，取消一个不存在的点赞不产生写入
+        verify(mapper).addInteract(argThat(list -> list.size() == 1
+                && list.get(0).getTid() == 1 && list.get(0).getUid() == 3), eq("like"));
+        verify(mapper).addInteract(argThat(list -> list.size() == 1 && list.get(0).getUid() == 2), eq("collect"));
+        verify(mapper, never()).deleteInteract(anyList(), anyString());
+        verify(hotService).increaseScore(Map.of(1, 1), "like");
+        verify(hotService).increaseScore(Map.of(1, 1), "collect");
+        //整批日志写入成功后一次性确认并删除
+        verify(streamOperations).acknowledge(anyString(), anyString(),
+                any(RecordId.class), any(RecordId.class), any(RecordId.class), any(RecordId.class));
+        verify(streamOperations).delete(anyString(),
+                any(RecordId.class), any(RecordId.class), any(RecordId.class), any(RecordId.class));
+    }
+
+    @Test
+    void failedWriteLeavesJournalUnacknowledged() {
+        when(mapper.existingInteracts(anyList(), anyString())).thenReturn(List.of());
+        doThrow(new IllegalStateException("database down")).when(mapper).addInteract(anyList(), anyString());
+        journal.add(List.of(this.record("like", 1, 2, true)));
+
+        service.flush();
+
+        verify(streamOperations, never()).acknowledge(anyString(), anyString(), any(RecordId[].class));
+        verify(streamOperations, never()).delete(anyString(), any(RecordId[].class));
+        verifyNoInteractions(hotService, statsService);
+    }
+
+    @Test
+    void committedChunksKeepTheirUpdatesWhenALaterChunkFails() {
+        when(mapper.existingInteracts(anyList(), anyString())).thenReturn(List.of());
+        doNothing().doThrow(new IllegalStateException("database down"))
+                .when(mapper).addInteract(anyList(), eq("like"));
+        List<MapRecord<String, Object, Object>> batch = new ArrayList<>();
+        for (int uid = 1; uid <= 600; uid++)
+            batch.add(this.record("like", 1, uid, true));
+        journal.add(batch);
+
+        service.flush();
+
+        //第一段已经提交，位图、计数与热度随之更新，重放时这些操作被识别为没有变化也不会丢失
+        verify(indexService).applyChanges(eq("like"), argThat(list -> list.size() == 500), eq(List.of()));
+        verify(statsService).increaseInteractCount(Map.of(1, 500), "like");
+        verify(hotService).increaseScore(Map.of(1, 500), "like");
+        verify(streamOperations, never()).acknowledge(anyString(), anyString(), any(RecordId[].class));
+    }
+
+    @Test
+    void failedUpdateAfterCommitInvalidatesIndexAndRecounts() {
+        when(mapper.existingInteracts(anyList(), anyString())).thenReturn(List.of());
+        doThrow(new IllegalStateException("redis down"))
+                .when(statsService).increaseInteractCount(anyMap(), anyString());
+        journal.add(List.of(this.record("like", 1, 2, true)));
+
+        service.flush();
+
+        verify(indexService).invalidate("like", Set.of(1));
+        verify(statsService).recountStats(Set.of(1));
+        verify(streamOperations, never()).acknowledge(anyString(), anyString(), any(RecordId[].class));
+    }
+
+    @Test
+    void filterInteractedPrefersPendingStateOverIndex() {
+        HashOperations<String, Object, Object> hashOperations = mock(HashOperations.class);
+        doReturn(hashOperations).when(template).opsForHash();
+        when(hashOperations.multiGet("like", List.<Object>of("1:7", "2:7", "3:7"))).thenReturn(Arrays.asList("true", null, "false"));
+        when(indexService.filterInteracted("like", List.of(2), 7)).thenReturn(Set.of(2));
+
+        //尚未写入数据库的点赞与取消直接生效，只有没有待写入状态的帖子查询位图
+        assertEquals(Set.of(1, 2), service.filterInteracted("like", List.of(1, 2, 3), 7));
+        verify(indexService, times(1)).filterInteracted(anyString(), anyCollection(), anyInt());
+    }
+
+    @Test
+    void lostLockStopsReadingNewBatches() {
+        RedisScript<?> renew = (RedisScript<?>) ReflectionTestUtils.getField(TopicInteractServiceImpl.class, "RENEW_SCRIPT");
+        doReturn(0L).when(template).execute(same(renew), anyList(), any(Object[].class));
+        journal.add(List.of(this.record("like", 1, 2, true)));
+
+        service.flush();
+
+        //只处理了之前未确认的日志，续期失败后不再读取新的日志
+        verify(streamOperations, times(1)).read(any(Consumer.class), any(StreamReadOptions.class), any(StreamOffset.class));
+        verifyNoInteractions(mapper);
+    }
+
+    @Test
+    void shutdownWaitsOnlyForUnacknowledgedRecords() {
+        when(streamOperations.size(anyString())).thenReturn(500L);
+        when(streamOperations.pending(anyString(), anyString()))
+                .thenReturn(new PendingMessagesSummary("flusher", 0, Range.unbounded(), Map.of()));
+        journal.add(List.of(this.record("like", 1, 2, true)));
+
+        ReflectionTestUtils.invokeMethod(service, "drainJournal");
+
+        //其他节点追加的日志不影响关闭，自己读取的日志全部确认后立即结束
+        verify(mapper).addInteract(anyList(), eq("like"));
+        verify(streamOperations, times(1)).pending(anyString(), anyString());
+    }
+
+    private MapRecord<String, Object, Object> record(String type, int tid, int uid, boolean state) {
+        Map<Object, Object> value = Map.of(
+                "type", type,
+                "key", tid + ":" + uid,
+                "state", String.valueOf(state),
+                "time", "1000");
+        return StreamRecords.newRecord()
+                .in("interact:journal")
+                .withId(RecordId.of(1000, ++sequence))
+                .ofMap(value);
+    }
+}
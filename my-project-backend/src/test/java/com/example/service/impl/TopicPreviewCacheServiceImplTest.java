@@ -0,0 +1,114 @@
+package com.example.service.impl;
+
+import com.example.utils.CacheUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TopicPreviewCacheServiceImplTest {
+
+    @Mock
+    CacheUtils cacheUtils;
+
+    @Mock
+    StringRedisTemplate template;
+
+    @Mock
+    SetOperations<String, String> setOperations;
+
+    @InjectMocks
+    TopicPreviewCacheServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        //命名空间当前版本固定为1
+        lenient().when(cacheUtils.namespaceKey(anyString(), anyString()))
+                .thenAnswer(invocation -> invocation.getArgument(0) + "1:" + invocation.getArgument(1));
+    }
+
+    @Test
+    void createdTopicEvictsOnlyFirstPagesOfItsTypeAndAllTypes() {
+        service.onTopicCreated(2);
+
+        verify(cacheUtils).deleteCache(List.of("topic:preview:cursor:2:1:", "topic:preview:cursor:0:1:"));
+        verify(cacheUtils).invalidateNamespace("topic:preview:page:2:");
+        verify(cacheUtils).invalidateNamespace("topic:preview:page:0:");
+        //其余类型与游标分页的后续页保持不变
+        verify(cacheUtils, times(2)).invalidateNamespace(anyString());
+        verify(cacheUtils, times(1)).deleteCache(anyCollection());
+        verify(cacheUtils, never()).deleteCache(anyString());
+        verifyNoInteractions(template);
+    }
+
+    @Test
+    void updatedTopicEvictsTrackedPagesOnly() {
+        when(template.opsForSet()).thenReturn(setOperations);
+        when(setOperations.members("topic:preview:owner:5"))
+                .thenReturn(Set.of("topic:preview:page:2:1:1", "topic:preview:cursor:0:1:"));
+
+        service.onTopicUpdated(5, 2, 2);
+
+        verify(cacheUtils).deleteCache(Set.of("topic:preview:page:2:1:1", "topic:preview:cursor:0:1:"));
+        verify(template).delete("topic:preview:owner:5");
+        verify(cacheUtils, never()).invalidateNamespace(anyString());
+    }
+
+    @Test
+    void untrackedTopicUpdateDeletesNothing() {
+        when(template.opsForSet()).thenReturn(setOperations);
+        when(setOperations.members("topic:preview:owner:5")).thenReturn(Set.of());
+
+        service.onTopicUpdated(5, 2, 2);
+
+        verify(cacheUtils, never()).deleteCache(anyCollection());
+        verify(cacheUtils, never()).invalidateNamespace(anyString());
+    }
+
+    @Test
+    void typeChangeAlsoInvalidatesBothPageNamespacesAndNewCursorNamespace() {
+        when(template.opsForSet()).thenReturn(setOperations);
+        when(setOperations.members("topic:preview:owner:5")).thenReturn(Set.of("topic:preview:cursor:2:1:"));
+
+        service.onTopicUpdated(5, 2, 3);
+
+        verify(cacheUtils).deleteCache(Set.of("topic:preview:cursor:2:1:"));
+        verify(cacheUtils).invalidateNamespace("topic:preview:page:2:");
+        verify(cacheUtils).invalidateNamespace("topic:preview:page:3:");
+        verify(cacheUtils).invalidateNamespace("topic:preview:cursor:3:");
+        //旧类型的游标分页中帖子已经通过所在页清除，不需要整体失效
+        verify(cacheUtils, never()).invalidateNamespace("topic:preview:cursor:2:");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void trackedPagesAreRecordedPerTopicWithExpire() {
+        service.trackTopics("topic:preview:page:2:1:1", List.of(7, 8));
+
+        ArgumentCaptor<SessionCallback<Object>> callback = ArgumentCaptor.forClass(SessionCallback.class);
+        verify(template).executePipelined(callback.capture());
+        RedisOperations<String, String> operations = mock(RedisOperations.class);
+        when(operations.opsForSet()).thenReturn(setOperations);
+        callback.getValue().execute(operations);
+
+        verify(setOperations).add("topic:preview:owner:7", "topic:preview:page:2:1:1");
+        verify(setOperations).add("topic:preview:owner:8", "topic:preview:page:2:1:1");
+        verify(operations).expire("topic:preview:owner:7", 180, TimeUnit.SECONDS);
+        verify(operations).expire("topic:preview:owner:8", 180, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.service.impl;
+
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.example.entity.dto.Topic;
+import com.example.entity.dto.TopicStats;
+import com.example.entity.dto.UserCard;
+import com.example.entity.vo.response.TopicDetailVO;
+import com.example.entity.vo.response.TopicPageVO;
+import com.example.entity.vo.response.TopicPreviewVO;
+import com.example.mapper.TopicMapper;
+import com.example.service.TopicInteractService;
+import com.example.service.TopicPreviewCacheService;
+import com.example.service.TopicStatsService;
+import com.example.service.UserCardService;
+import com.example.utils.CacheUtils;
+import jakarta.validation.ValidationException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TopicServiceImplTest {
+
+    @Mock
+    TopicMapper topicMapper;
+
+    @Mock
+    CacheUtils cacheUtils;
+
+    @Mock
+    TopicPreviewCacheService previewCache;
+
+    @Mock
+    UserCardService userCardService;
+
+    @Mock
+    TopicStatsService statsService;
+
+    @Mock
+    TopicInteractService interactService;
+
+    @Mock
+    StringRedisTemplate template;
+
+    @Mock
+    ValueOperations<String, String> operations;
+
+    @InjectMocks
+    TopicServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "baseMapper", topicMapper);
+    }
+
+    @Test
+    void previewPageLoadsAuthorsAndStatsInOneBatch() {
+        List<Topic> topics = IntStream.rangeClosed(1, 10)
+                .mapToObj(id -> this.topic(id, id % 3 + 1))
+                .toList();
+        when(previewCache.pageKey(1, 0)).thenReturn("page");
+        when(cacheUtils.takeListFromCache(eq("page"), eq(TopicPreviewVO.class), anyLong(), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(3).get());
+        when(topicMapper.selectPage(any(), any())).thenAnswer(invocation -> {
+            Page<Topic> page = invocation.getArgument(0);
+            page.setRecords(topics);
+            return page;
+        });
+        when(userCardService.findUserCards(anyCollection())).thenReturn(Map.of(1, this.card(1)));
+        when(statsService.findStats(anyCollection())).thenReturn(Map.of(1, new TopicStats(1, 5, 2, 0)));
+
+        List<TopicPreviewVO> list = service.listTopicByPage(1, 0, 1);
+
+        assertEquals(10, list.size());
+        assertEquals(5, list.get(0).getLike());
+        assertEquals("user1", list.stream()
+                .filter(vo -> Objects.equals(vo.getUid(), 1))
+                .findFirst()
+                .map(TopicPreviewVO::getUsername)
+                .orElse(null));
+        //整页只有一次帖子查询，作者与计数各一次批量读取，不随帖子数量增加
+        verify(topicMapper, times(1)).selectPage(any(), any());
+        verify(userCardService, times(1)).findUserCards(argThat(uids -> uids.size() == 3));
+        verify(statsService, times(1)).findStats(argThat((Collection<Integer> tids) -> tids.size() == 10));
+        verify(statsService, never()).findStats(anyInt());
+        verifyNoMoreInteractions(topicMapper, userCardService);
+    }
+
+    @Test
+    void malformedCursorIsRejectedInsteadOfRestartingFromFirstPage() {
+        assertThrows(ValidationException.class, () -> service.listTopicByCursor("99999999999999999999-1", 0, 1));
+        assertThrows(ValidationException.class, () -> service.listTopicByCursor("1-99999999999", 0, 1));
+        assertThrows(ValidationException.class, () -> service.listTopicByCursor("abc", 0, 1));
+        assertThrows(ValidationException.class, () -> service.comments(1, "1-2-3"));
+        verifyNoInteractions(cacheUtils, previewCache, topicMapper);
+    }
+
+    @Test
+    void emptyCursorMeansFirstPage() {
+        TopicPageVO first = new TopicPageVO();
+        first.setList(List.of());
+        when(previewCache.cursorKey("", 0)).thenReturn("first");
+        when(cacheUtils.takeFromCache(eq("first"), eq(TopicPageVO.class), anyLong(), any())).thenReturn(first);
+
+        assertEquals(first, service.listTopicByCursor("", 0, 1));
+    }
+
+    @Test
+    void missingTopicIsRememberedForAShortTime() {
+        when(cacheUtils.takeFromCache(eq("topic:detail:404"), eq(TopicDetailVO.class), anyLong(), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(3).get());
+        when(template.hasKey("topic:detail-missing:404")).thenReturn(false);
+        when(template.opsForValue()).thenReturn(operations);
+
+        assertNull(service.getTopic(404, 1));
+
+        verify(topicMapper).selectById(404);
+        verify(operations).set("topic:detail-missing:404", "", 30, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void markedMissingTopicDoesNotQueryDatabase() {
+        when(cacheUtils.takeFromCache(eq("topic:detail:404"), eq(TopicDetailVO.class), anyLong(), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(3).get());
+        when(template.hasKey("topic:detail-missing:404")).thenReturn(true);
+
+        assertNull(service.getTopic(404, 1));
+
+        verify(topicMapper, never()).selectById(anyInt());
+        verifyNoInteractions(interactService, statsService, userCardService);
+    }
+
+    @Test
+    void laterCursorPagesAreNotCached() {
+        when(topicMapper.selectList(any())).thenReturn(List.of());
+
+        TopicPageVO page = service.listTopicByCursor("1700000000000-5", 0, 1);
+
+        assertTrue(page.getList().isEmpty());
+        assertNull(page.getNext());
+        verifyNoInteractions(cacheUtils, previewCache);
+    }
+
+    @Test
+    void likedFlagsAreMarkedOnCopiesOfTheSharedPage() {
+        List<TopicPreviewVO> shared = List.of(this.preview(1), this.preview(2));
+        when(previewCache.pageKey(1, 0)).thenReturn("page");
+        when(cacheUtils.takeListFromCache(eq("page"), eq(TopicPreviewVO.class), anyLong(), any())).thenReturn(shared);
+        when(interactService.filterInteracted("like", List.of(1, 2), 7)).thenReturn(Set.of(2));
+
+        List<TopicPreviewVO> list = service.listTopicByPage(1, 0, 7);
+
+        assertFalse(list.get(0).isLiked());
+        assertTrue(list.get(1).isLiked());
+        assertEquals("topic2", list.get(1).getTitle());
+        //缓存中的对象由所有用户共享，不能被修改
+        assertFalse(shared.get(1).isLiked());
+        verify(interactService, times(1)).filterInteracted(anyString(), anyCollection(), anyInt());
+    }
+
+    private TopicPreviewVO preview(int id) {
+        TopicPreviewVO vo = new TopicPreviewVO();
+        vo.setId(id);
+        vo.setTitle("topic" + id);
+        return vo;
+    }
+
+    private Topic topic(int id, int uid) {
+        Topic topic = new Topic();
+        topic.setId(id);
+        topic.setUid(uid);
+        topic.setType(1);
+        topic.setTitle("topic" + id);
+        topic.setTime(new Date(id * 1000L));
+        topic.setPreviewText("text" + id);
+        topic.setPreviewImages("[]");
+        return topic;
+    }
+
+    private UserCard card(int id) {
+        UserCard card = new UserCard();
+        card.setId(id);
+        card.setUsername("user" + id);
+        return card;
+    }
+}
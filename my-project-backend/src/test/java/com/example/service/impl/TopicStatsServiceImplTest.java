@@ -0,0 +1,137 @@
+package com.example.service.impl;
+
+import com.example.entity.dto.InteractCount;
+import com.example.entity.dto.Topic;
+import com.example.entity.dto.TopicStats;
+import com.example.mapper.TopicCommentMapper;
+import com.example.mapper.TopicMapper;
+import com.example.mapper.TopicStatsMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TopicStatsServiceImplTest {
+
+    @Mock
+    TopicStatsMapper statsMapper;
+
+    @Mock
+    TopicMapper topicMapper;
+
+    @Mock
+    TopicCommentMapper commentMapper;
+
+    @Mock
+    StringRedisTemplate template;
+
+    @Mock
+    ValueOperations<String, String> operations;
+
+    @InjectMocks
+    TopicStatsServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "baseMapper", statsMapper);
+    }
+
+    @Test
+    void interactDeltaIsAppliedWithoutRecounting() {
+        when(statsMapper.selectBatchIds(anyCollection())).thenReturn(List.of(new TopicStats(1, 10, 0, 0)));
+
+        service.increaseInteractCount(Map.of(1, 1), "like");
+
+        verify(statsMapper).increaseCount(1, "likes", 1);
+        verify(template).execute(any(), eq(List.of("topic:stats:1", "topic:stats-version:1")),
+                eq("like"), eq("7200"), eq("1"));
+        //计数变化时不再扫描明细表
+        verifyNoInteractions(topicMapper);
+    }
+
+    @Test
+    void zeroDeltaTouchesNothing() {
+        service.increaseInteractCount(Map.of(1, 0), "collect");
+
+        verifyNoInteractions(statsMapper, topicMapper, template);
+    }
+
+    @Test
+    void reconcileSkipsWhileAnotherNodeHoldsTheLock() {
+        when(template.opsForValue()).thenReturn(operations);
+        when(operations.setIfAbsent(eq("topic:stats-reconcile:lock"), anyString(), eq(60L), eq(TimeUnit.SECONDS)))
+                .thenReturn(false);
+
+        service.reconcileStats();
+
+        verifyNoInteractions(topicMapper, statsMapper, commentMapper);
+        verify(template, never()).execute(any(), anyList(), any(Object[].class));
+    }
+
+    @Test
+    void reconcileContinuesFromSharedCursorAndKeepsConcurrentChanges() {
+        when(template.opsForValue()).thenReturn(operations);
+        when(operations.setIfAbsent(eq("topic:stats-reconcile:lock"), anyString(), eq(60L), eq(TimeUnit.SECONDS)))
+                .thenReturn(true);
+        when(operations.get("topic:stats-reconcile:cursor")).thenReturn("100");
+        when(topicMapper.selectList(any())).thenReturn(List.of(topic(101), topic(102)));
+        when(topicMapper.interactCountBatch(anyList(), eq("like")))
+                .thenReturn(List.of(new InteractCount(101, 5), new InteractCount(102, 8)));
+        when(topicMapper.interactCountBatch(anyList(), eq("collect"))).thenReturn(List.of());
+        when(commentMapper.commentCountBatch(anyList())).thenReturn(List.of());
+        //101 的计数在每次统计期间都被增量更新，条件写入一直失败
+        when(statsMapper.selectBatchIds(anyCollection()))
+                .thenReturn(List.of(new TopicStats(101, 4, 0, 0), new TopicStats(102, 7, 0, 0)))
+                .thenReturn(List.of(new TopicStats(101, 6, 0, 0)))
+                .thenReturn(List.of(new TopicStats(101, 7, 0, 0)));
+        when(statsMapper.compareAndSaveStats(any(), any()))
+                .thenAnswer(invocation -> invocation.<TopicStats>getArgument(0).getTid() == 102 ? 1 : 0);
+
+        service.reconcileStats();
+
+        verify(statsMapper).compareAndSaveStats(new TopicStats(102, 7, 0, 0), new TopicStats(102, 8, 0, 0));
+        verify(statsMapper).compareAndSaveStats(new TopicStats(101, 4, 0, 0), new TopicStats(101, 5, 0, 0));
+        verify(statsMapper).compareAndSaveStats(new TopicStats(101, 6, 0, 0), new TopicStats(101, 5, 0, 0));
+        verify(statsMapper).compareAndSaveStats(new TopicStats(101, 7, 0, 0), new TopicStats(101, 5, 0, 0));
+        verify(statsMapper, times(3)).selectBatchIds(anyCollection());
+        verify(statsMapper, never()).saveStats(anyList());
+        //只有实际修正过的帖子让镜像失效
+        verify(template).execute(any(), eq(List.of("topic:stats:102", "topic:stats-version:102")), eq("7200"));
+        verify(operations).set("topic:stats-reconcile:cursor", "102");
+        verify(template).execute(any(), eq(List.of("topic:stats-reconcile:lock")), anyString());
+    }
+
+    @Test
+    void reconcileRestartsFromTheBeginningAfterTheLastTopic() {
+        when(template.opsForValue()).thenReturn(operations);
+        when(operations.setIfAbsent(eq("topic:stats-reconcile:lock"), anyString(), eq(60L), eq(TimeUnit.SECONDS)))
+                .thenReturn(true);
+        when(operations.get("topic:stats-reconcile:cursor")).thenReturn("102");
+        when(topicMapper.selectList(any())).thenReturn(List.of());
+
+        service.reconcileStats();
+
+        verify(template).delete("topic:stats-reconcile:cursor");
+        verify(template).execute(any(), eq(List.of("topic:stats-reconcile:lock")), anyString());
+        verifyNoInteractions(statsMapper);
+    }
+
+    private static Topic topic(int id) {
+        Topic topic = new Topic();
+        topic.setId(id);
+        return topic;
+    }
+}
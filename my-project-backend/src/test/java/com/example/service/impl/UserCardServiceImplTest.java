@@ -0,0 +1,76 @@
+package com.example.service.impl;
+
+import com.example.entity.dto.Account;
+import com.example.entity.dto.UserCard;
+import com.example.mapper.AccountDetailsMapper;
+import com.example.mapper.AccountMapper;
+import com.example.mapper.AccountPrivacyMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UserCardServiceImplTest {
+
+    @Mock
+    AccountMapper accountMapper;
+
+    @Mock
+    AccountDetailsMapper detailsMapper;
+
+    @Mock
+    AccountPrivacyMapper privacyMapper;
+
+    @Mock
+    StringRedisTemplate template;
+
+    @InjectMocks
+    UserCardServiceImpl service;
+
+    @Test
+    void writeBackCarriesVersionReadBeforeLoading() {
+        when(template.executePipelined(any(RedisCallback.class))).thenReturn(Arrays.asList(null, "3"));
+        when(accountMapper.selectBatchIds(anyCollection())).thenReturn(List.of(
+                new Account(1, "user1", "secret", "a@b.c", "user", null, new Date(), false, false)));
+        when(detailsMapper.selectBatchIds(anyCollection())).thenReturn(List.of());
+        when(privacyMapper.selectBatchIds(anyCollection())).thenReturn(List.of());
+
+        Map<Integer, UserCard> cards = service.findUserCards(List.of(1));
+
+        assertEquals("user1", cards.get(1).getUsername());
+        //回填只在版本号仍为加载前读到的值时生效，由脚本在Redis中判断
+        verify(template).execute(any(), eq(List.of("user:card:1", "user:card-version:1")),
+                eq("3600"), eq("3"), anyString());
+    }
+
+    @Test
+    void cachedCardSkipsDatabase() {
+        when(template.executePipelined(any(RedisCallback.class)))
+                .thenReturn(Arrays.asList("{\"id\":1,\"username\":\"user1\"}", "3"));
+
+        assertEquals("user1", service.findUserCard(1).getUsername());
+        verifyNoInteractions(accountMapper, detailsMapper, privacyMapper);
+        verify(template).executePipelined(any(RedisCallback.class));
+        verifyNoMoreInteractions(template);
+    }
+
+    @Test
+    void deleteBumpsVersion() {
+        service.deleteUserCard(1);
+
+        verify(template).execute(any(), eq(List.of("user:card:1", "user:card-version:1")), eq("7200"));
+    }
+}
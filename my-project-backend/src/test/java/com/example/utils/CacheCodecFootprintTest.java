@@ -0,0 +1,63 @@
+package com.example.utils;
+
+import com.alibaba.fastjson2.JSONObject;
+import com.example.entity.vo.response.TopicPreviewVO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 缓存内容编码方式的体积与速度对比，只在内存中编码解码，不需要Redis
+ * 使用帖子列表页作为样本，分别统计JSON与JSONB编码后的大小、GZIP压缩后的大小，以及编码与解码的平均耗时
+ * 运行较慢，默认跳过，需要时执行：mvn test -Dtest=CacheCodecFootprintTest -Dfootprint=true
+ */
+@EnabledIfSystemProperty(named = "footprint", matches = "true")
+class CacheCodecFootprintTest {
+
+    private static final int ROUNDS = 20_000;
+
+    @Test
+    void compareCodecs() throws IOException {
+        for (int size : new int[]{ 1, 10, 50 }) {
+            List<TopicPreviewVO> page = CacheUtilsTest.previewPage(size);
+            JSONObject envelope = new JSONObject();
+            envelope.put("value", page);
+            envelope.put("expireAt", System.currentTimeMillis());
+            envelope.put("delta", 10);
+            for (CacheCodec codec : CacheCodec.values()) {
+                byte[] encoded = codec.encode(envelope);
+                long sink = 0, encode = 0, decode = 0;
+                //第一轮为预热，只记录第二轮的结果
+                for (int round = 0; round < 2; round++) {
+                    long start = System.nanoTime();
+                    for (int i = 0; i < ROUNDS; i++)
+                        sink += codec.encode(envelope).length;
+                    encode = System.nanoTime() - start;
+                    start = System.nanoTime();
+                    for (int i = 0; i < ROUNDS; i++)
+                        sink += codec.decodeObject(encoded).getJSONArray("value").toList(TopicPreviewVO.class).size();
+                    decode = System.nanoTime() - start;
+                }
+                System.out.printf("%-5s 列表%3d条  编码后 %,7d 字节  GZIP后 %,6d 字节  编码 %,8.0f ns  解码 %,8.0f ns%n",
+                        codec, size, encoded.length, gzip(encoded).length,
+                        (double) encode / ROUNDS, (double) decode / ROUNDS);
+                assertEquals(page, codec.decodeObject(encoded).getJSONArray("value").toList(TopicPreviewVO.class));
+                assertTrue(sink > 0);
+            }
+        }
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(stream)) {
+            gzip.write(data);
+        }
+        return stream.toByteArray();
+    }
+}
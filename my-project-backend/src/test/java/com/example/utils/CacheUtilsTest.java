@@ -0,0 +1,294 @@
+package com.example.utils;
+
+import com.alibaba.fastjson2.JSONObject;
+import com.example.entity.dto.TopicStats;
+import com.example.entity.vo.response.TopicPreviewVO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class CacheUtilsTest {
+
+    //用Map模拟Redis中保存的缓存内容
+    private final Map<String, byte[]> redis = new ConcurrentHashMap<>();
+    private CacheUtils utils;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        RedisTemplate<String, byte[]> byteTemplate = mock(RedisTemplate.class);
+        ValueOperations<String, byte[]> operations = mock(ValueOperations.class);
+        when(byteTemplate.opsForValue()).thenReturn(operations);
+        when(operations.get(anyString())).thenAnswer(invocation -> redis.get(invocation.<String>getArgument(0)));
+        doAnswer(invocation -> redis.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(operations).set(anyString(), any(byte[].class), anyLong(), any(TimeUnit.class));
+        utils = new CacheUtils();
+        ReflectionTestUtils.setField(utils, "template", mock(StringRedisTemplate.class));
+        ReflectionTestUtils.setField(utils, "byteRedisTemplate", byteTemplate);
+        ReflectionTestUtils.setField(utils, "codec", CacheCodec.JSON);
+        ReflectionTestUtils.setField(utils, "compressThreshold", 1024);
+    }
+
+    @Test
+    void concurrentMissesShareOneLoad() throws Exception {
+        int callers = 16;
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return utils.takeFromCache("test:key", String.class, 60, () -> {
+                        loads.incrementAndGet();
+                        sleep(300);
+                        return "value";
+                    });
+                }));
+            }
+            start.countDown();
+            for (Future<String> result : results)
+                assertEquals("value", result.get(5, TimeUnit.SECONDS));
+            assertEquals(1, loads.get());
+            assertTrue(redis.containsKey("test:key"));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void loaderFailureReachesEveryWaiterAndIsRetried() throws Exception {
+        int callers = 8;
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return utils.takeFromCache("test:fail", String.class, 60, () -> {
+                        loads.incrementAndGet();
+                        sleep(300);
+                        throw new IllegalStateException("load failed");
+                    });
+                }));
+            }
+            start.countDown();
+            for (Future<String> result : results) {
+                ExecutionException exception = assertThrows(ExecutionException.class,
+                        () -> result.get(5, TimeUnit.SECONDS));
+                assertInstanceOf(IllegalStateException.class, exception.getCause());
+            }
+            assertEquals(1, loads.get());
+            //失败的结果不会被缓存，之后的请求重新加载
+            assertEquals("value", utils.takeFromCache("test:fail", String.class, 60, () -> "value"));
+            assertFalse(redis.isEmpty());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void expiredEnvelopeAlwaysRefreshes() throws Exception {
+        Object expired = envelope(System.currentTimeMillis() - 1, 1);
+        for (int i = 0; i < 1000; i++)
+            assertTrue(this.shouldRefresh(expired));
+    }
+
+    @Test
+    void envelopeFarFromExpiryNeverRefreshesEarly() throws Exception {
+        //随机数最小约为2^-53，-ln(r)不超过37，加载耗时1毫秒时最多只会提前37毫秒刷新
+        Object fresh = envelope(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1), 1);
+        for (int i = 0; i < 10000; i++)
+            assertFalse(this.shouldRefresh(fresh));
+    }
+
+    @Test
+    void earlyRefreshProbabilityFollowsXFetch() throws Exception {
+        //距离过期1秒、加载耗时1秒时，提前刷新的概率为 P(-ln(r) >= 1) = e^-1 ≈ 0.37
+        Object near = envelope(System.currentTimeMillis() + 1000, 1000);
+        int samples = 10000, refreshed = 0;
+        for (int i = 0; i < samples; i++)
+            if(this.shouldRefresh(near)) refreshed++;
+        double ratio = (double) refreshed / samples;
+        assertTrue(ratio > 0.3 && ratio < 0.45, "提前刷新比例为 " + ratio);
+        //加载耗时越短，提前刷新的概率越小
+        Object cheap = envelope(System.currentTimeMillis() + 1000, 100);
+        int cheapRefreshed = 0;
+        for (int i = 0; i < samples; i++)
+            if(this.shouldRefresh(cheap)) cheapRefreshed++;
+        assertTrue(cheapRefreshed < refreshed / 10, "提前刷新次数为 " + cheapRefreshed);
+    }
+
+    @Test
+    void staleValueIsServedWhileOneBackgroundRefreshRuns() throws Exception {
+        this.putEnvelope("test:stale", "old", System.currentTimeMillis() - 1000);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < 5; i++) {
+            assertEquals("old", utils.takeFromCache("test:stale", String.class, 60, () -> {
+                loads.incrementAndGet();
+                try {
+                    release.await();
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                }
+                return "new";
+            }));
+        }
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((!"new".equals(this.storedValue("test:stale")) || !this.refreshing().isEmpty())
+                && System.currentTimeMillis() < deadline)
+            sleep(10);
+        assertEquals("new", this.storedValue("test:stale"));
+        //刷新期间的其他请求不会重复提交刷新任务
+        assertEquals(1, loads.get());
+        assertTrue(this.refreshing().isEmpty());
+    }
+
+    @Test
+    void rejectedRefreshKeepsServingStaleValue() {
+        ((ExecutorService) ReflectionTestUtils.getField(utils, "refresher")).shutdown();
+        this.putEnvelope("test:rejected", "old", System.currentTimeMillis() - 1000);
+        AtomicInteger loads = new AtomicInteger();
+
+        assertEquals("old", utils.takeFromCache("test:rejected", String.class, 60, () -> {
+            loads.incrementAndGet();
+            return "new";
+        }));
+
+        assertEquals(0, loads.get());
+        assertEquals("old", this.storedValue("test:rejected"));
+        //拒绝后释放刷新标记，线程池恢复后下一次请求可以重新提交
+        assertTrue(this.refreshing().isEmpty());
+    }
+
+    @ParameterizedTest
+    @EnumSource(CacheCodec.class)
+    void smallValueIsStoredUncompressed(CacheCodec codec) {
+        ReflectionTestUtils.setField(utils, "codec", codec);
+        TopicStats stats = new TopicStats(1, 2, 3, 4);
+
+        utils.saveToCache("test:small", stats, 60);
+
+        byte[] stored = redis.get("test:small");
+        assertEquals(0, stored[0]);
+        assertArrayEquals(codec.encode(stats), Arrays.copyOfRange(stored, 1, stored.length));
+        assertEquals(stats, utils.takeFromCache("test:small", TopicStats.class));
+    }
+
+    @ParameterizedTest
+    @EnumSource(CacheCodec.class)
+    void largeValueIsCompressedAndRestored(CacheCodec codec) {
+        ReflectionTestUtils.setField(utils, "codec", codec);
+        List<TopicPreviewVO> page = previewPage(20);
+        byte[] encoded = codec.encode(page);
+        assertTrue(encoded.length >= 1024);
+
+        utils.saveListToCache("test:large", page, 60);
+
+        byte[] stored = redis.get("test:large");
+        assertEquals(1, stored[0]);
+        assertTrue(stored.length < encoded.length);
+        assertEquals(page, utils.takeListFromCache("test:large", TopicPreviewVO.class));
+    }
+
+    @ParameterizedTest
+    @EnumSource(CacheCodec.class)
+    void envelopeRoundTripsBelowAndAboveThreshold(CacheCodec codec) {
+        ReflectionTestUtils.setField(utils, "codec", codec);
+        TopicStats stats = new TopicStats(1, 2, 3, 4);
+        List<TopicPreviewVO> page = previewPage(20);
+
+        assertEquals(stats, utils.takeFromCache("test:envelope:small", TopicStats.class, 60, () -> stats));
+        assertEquals(page, utils.takeListFromCache("test:envelope:large", TopicPreviewVO.class, 60, () -> page));
+
+        assertEquals(0, redis.get("test:envelope:small")[0]);
+        assertEquals(1, redis.get("test:envelope:large")[0]);
+        //再次读取时直接从缓存解码，不会调用加载函数
+        assertEquals(stats, utils.takeFromCache("test:envelope:small", TopicStats.class, 60, () -> fail("不应重新加载")));
+        assertEquals(page, utils.takeListFromCache("test:envelope:large", TopicPreviewVO.class, 60, () -> fail("不应重新加载")));
+    }
+
+    static List<TopicPreviewVO> previewPage(int size) {
+        return IntStream.rangeClosed(1, size).mapToObj(id -> {
+            TopicPreviewVO vo = new TopicPreviewVO();
+            vo.setId(id);
+            vo.setType(id % 5 + 1);
+            vo.setTitle("帖子标题 " + id);
+            vo.setText("预览文本内容，".repeat(40) + id);
+            vo.setImages(List.of("/images/cache/" + id + ".png"));
+            vo.setTime(new Date(1700000000000L + id * 1000L));
+            vo.setUid(id % 7);
+            vo.setUsername("user" + id % 7);
+            vo.setAvatar("/avatar/" + id % 7);
+            vo.setLike(id * 3);
+            vo.setCollect(id);
+            return vo;
+        }).toList();
+    }
+
+    private boolean shouldRefresh(Object envelope) {
+        return Boolean.TRUE.equals(ReflectionTestUtils.invokeMethod(utils, "shouldRefresh", envelope));
+    }
+
+    private static Object envelope(long expireAt, long delta) throws Exception {
+        Constructor<?> constructor = Class.forName("com.example.utils.CacheUtils$CacheEnvelope")
+                .getDeclaredConstructor(Object.class, long.class, long.class);
+        constructor.setAccessible(true);
+        return constructor.newInstance("value", expireAt, delta);
+    }
+
+    //按带加载函数的缓存格式写入：首字节为未压缩标记，之后是包含逻辑过期时间与加载耗时的JSON
+    private void putEnvelope(String key, String value, long expireAt) {
+        JSONObject object = new JSONObject();
+        object.put("value", value);
+        object.put("expireAt", expireAt);
+        object.put("delta", 10);
+        byte[] encoded = CacheCodec.JSON.encode(object);
+        byte[] bytes = new byte[encoded.length + 1];
+        System.arraycopy(encoded, 0, bytes, 1, encoded.length);
+        redis.put(key, bytes);
+    }
+
+    private String storedValue(String key) {
+        byte[] bytes = redis.get(key);
+        return CacheCodec.JSON.decodeObject(Arrays.copyOfRange(bytes, 1, bytes.length)).getString("value");
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<String> refreshing() {
+        return (Set<String>) ReflectionTestUtils.getField(utils, "refreshing");
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
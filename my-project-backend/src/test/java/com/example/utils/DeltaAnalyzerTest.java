@@ -0,0 +1,113 @@
+package com.example.utils;
+
+import com.alibaba.fastjson2.JSONArray;
+import com.alibaba.fastjson2.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.NullAndEmptySource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeltaAnalyzerTest {
+
+    private static final int PREVIEW_LENGTH = 300;
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "{\"ops\":[]}",
+            "{\"ops\":[{\"insert\":\"\"}]}",
+            "{\"ops\":[{\"insert\":\"hello\\n\"}]}",
+            "{\"ops\":[{\"insert\":\"a\",\"attributes\":{}},{\"insert\":\"b\",\"attributes\":{\"bold\":true,\"list\":[]}}]}",
+            "{\"ops\":[{\"insert\":{\"image\":\"/images/a.png\"},\"attributes\":{\"width\":\"100\",\"style\":{\"a\":[1,2.5,{\"b\":null}],\"c\":\"\"}}}]}",
+            "{\"ops\":[{\"insert\":\"x\"},{\"insert\":{\"formula\":\"e=mc^2\"}},{\"insert\":{\"image\":\"/images/b.png\"}},{\"insert\":\"y\\n\",\"attributes\":{\"header\":1}}]}",
+            "{\"ops\":[{\"insert\":\"中文内容\"},{\"insert\":\"\\\"quoted\\\" \\\\ back\\tslash\"}]}",
+            "{\"other\":{\"nested\":[1,{\"x\":[]}]},\"ops\":[{\"insert\":\"kept\"}],\"tail\":null}",
+            "{\"ops\":[{\"insert\":\"a\",\"attributes\":null},{\"retain\":3},{\"delete\":1}]}"
+    })
+    void roundTripMatchesTreeAnalyzer(String json) {
+        DeltaAnalyzer.Result result = DeltaAnalyzer.analyze(json, Integer.MAX_VALUE, PREVIEW_LENGTH);
+        Reference reference = this.treeAnalyze(json);
+
+        assertTrue(result.valid());
+        assertFalse(result.malformed());
+        assertEquals(reference.length(), result.length());
+        assertEquals(reference.preview(), result.preview());
+        assertEquals(reference.images(), result.images());
+        //规范化内容只保留ops，重新解析后与原内容的ops部分完全一致
+        assertEquals(reference.normalized(), JSONObject.parseObject(result.normalized()));
+    }
+
+    @Test
+    void longPreviewIsCutLikeTreeAnalyzer() {
+        JSONArray ops = new JSONArray();
+        for (int i = 0; i < 50; i++)
+            ops.add(JSONObject.of("insert", "0123456789"));
+        String json = JSONObject.of("ops", ops).toJSONString();
+
+        DeltaAnalyzer.Result result = DeltaAnalyzer.analyze(json, Integer.MAX_VALUE, PREVIEW_LENGTH);
+
+        assertEquals(500, result.length());
+        assertEquals(this.treeAnalyze(json).preview(), result.preview());
+        assertEquals(PREVIEW_LENGTH, result.preview().length());
+    }
+
+    @Test
+    void overlongTextIsReportedAsTooLong() {
+        String json = "{\"ops\":[{\"insert\":\"0123456789\"},{\"insert\":\"0123456789\"}]}";
+
+        DeltaAnalyzer.Result result = DeltaAnalyzer.analyze(json, 15, PREVIEW_LENGTH);
+
+        assertFalse(result.valid());
+        assertFalse(result.malformed());
+        assertNull(result.normalized());
+    }
+
+    @ParameterizedTest
+    @NullAndEmptySource
+    @ValueSource(strings = {
+            "not json",
+            "[]",
+            "{}",
+            "{\"ops\":{}}",
+            "{\"ops\":[1]}",
+            "{\"ops\":[{\"insert\":\"a\"}]",
+            "{\"ops\":[{\"insert\":\"a\"}]} trailing",
+            "{\"ops\":[],\"ops\":[]}"
+    })
+    void malformedContentIsNotReportedAsTooLong(String json) {
+        DeltaAnalyzer.Result result = DeltaAnalyzer.analyze(json, Integer.MAX_VALUE, PREVIEW_LENGTH);
+
+        assertFalse(result.valid());
+        assertTrue(result.malformed());
+    }
+
+    /**
+     * 原先基于JSONObject整棵树解析的实现，作为流式分析的参照，
+     * 长度只统计文本插入，图片等嵌入内容不计入
+     */
+    private Reference treeAnalyze(String json) {
+        JSONArray ops = JSONObject.parseObject(json).getJSONArray("ops");
+        StringBuilder previewText = new StringBuilder();
+        List<String> images = new ArrayList<>();
+        int length = 0;
+        for (Object op : ops) {
+            Object insert = JSONObject.from(op).get("insert");
+            if(insert instanceof String text) {
+                length += text.length();
+                if(previewText.length() >= PREVIEW_LENGTH) continue;
+                previewText.append(text);
+            } else if(insert instanceof Map<?, ?> map && map.get("image") != null) {
+                images.add(map.get("image").toString());
+            }
+        }
+        String preview = previewText.length() > PREVIEW_LENGTH ? previewText.substring(0, PREVIEW_LENGTH) : previewText.toString();
+        return new Reference(length, preview, images, JSONObject.of("ops", ops));
+    }
+
+    private record Reference(int length, String preview, List<String> images, JSONObject normalized) {}
+}
@@ -23,6 +23,9 @@ export const apiForumUpdateTopic = (data, success) =>
 export const apiForumComments = (tid, page, success) =>
     get(`/api/forum/comments?tid=${tid}&page=${page}`, success)
 
+export const apiForumCommentsByCursor = (tid, cursor, success) =>
+    get(`/api/forum/comments?tid=${tid}&cursor=${cursor}`, success)
+
 export const apiForumCommentDelete = (id, success) =>
     get(`/api/forum/delete-comment?id=${id}`, success)
 
@@ -38,6 +41,9 @@ export const apiForumTopTopics = (success) =>
 export const apiForumTopicList = (page, type, success) =>
     get(`/api/forum/list-topic?page=${page}&type=${type}`, success)
 
+export const apiForumTopicListByCursor = (cursor, type, success) =>
+    get(`/api/forum/list-topic?cursor=${cursor}&type=${type}`, success)
+
 export const apiForumWeather = (longitude, latitude, success) =>
     get(`/api/forum/weather?longitude=${longitude}&latitude=${latitude}`, success)
 